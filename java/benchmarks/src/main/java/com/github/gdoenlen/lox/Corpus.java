@@ -0,0 +1,163 @@
+package com.github.gdoenlen.lox;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Lox sources for the benchmarks. Everything is generated from a fixed
+ * seed so every run, and every machine, measures the same input.
+ */
+final class Corpus {
+    private static final long SEED = 42;
+    private static final String[] OPERATORS = {
+        "or", "and", "==", "!=", "<", "<=", ">", ">=", "+", "-", "*", "/"
+    };
+
+    private Corpus() {}
+
+    /**
+     * Declarations, arithmetic, conditionals, loops and prints in nested
+     * blocks, roughly {@code size} characters of it.
+     */
+    static String statements(int size) {
+        var random = new Random(SEED);
+        var builder = new StringBuilder(size + 256);
+        for (int i = 0; builder.length() < size; i++) {
+            String name = "value" + i;
+            builder.append("{\n")
+                .append("    var ").append(name).append(" = ").append(random.nextInt(1000)).append(" * 2.5 - 1;\n")
+                .append("    // keep the comparison honest\n")
+                .append("    if (").append(name).append(" > ").append(random.nextInt(2500)).append(") {\n")
+                .append("        print \"large \" + ").append(name).append(";\n")
+                .append("    } else {\n")
+                .append("        ").append(name).append(" = ").append(name).append(" + 1;\n")
+                .append("    }\n")
+                .append("    while (").append(name).append(" < 0) { ").append(name).append(" = ").append(name).append(" + 10; }\n")
+                .append("}\n");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * A single print of an expression nested {@code depth} parentheses deep.
+     */
+    static String deepExpression(int depth) {
+        var random = new Random(SEED);
+        String[] operators = { "+", "-", "*", "/" };
+        var builder = new StringBuilder("print ");
+        for (int i = 0; i < depth; i++) {
+            builder.append(random.nextInt(100)).append(' ')
+                .append(operators[random.nextInt(operators.length)]).append(" (");
+        }
+
+        builder.append(1);
+        builder.append(")".repeat(depth)).append(";\n");
+
+        return builder.toString();
+    }
+
+    /**
+     * Assignments of random expressions, of every operator, prefix and
+     * grouping, roughly {@code size} characters of them.
+     */
+    static String expressions(int size) {
+        var random = new Random(SEED);
+        var builder = new StringBuilder(size + 256);
+        while (builder.length() < size) {
+            builder.append("result = ");
+            expression(random, builder, 6);
+            builder.append(";\n");
+        }
+
+        return builder.toString();
+    }
+
+    private static void expression(Random random, StringBuilder builder, int depth) {
+        if (depth == 0 || random.nextInt(5) == 0) {
+            switch (random.nextInt(4)) {
+                case 0 -> builder.append(random.nextInt(1000));
+                case 1 -> builder.append("name").append(random.nextInt(10));
+                case 2 -> builder.append("\"text\"");
+                default -> builder.append(random.nextBoolean());
+            }
+
+            return;
+        }
+
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                builder.append(random.nextBoolean() ? "-" : "!");
+                expression(random, builder, depth - 1);
+            }
+            case 1 -> {
+                builder.append('(');
+                expression(random, builder, depth - 1);
+                builder.append(')');
+            }
+            default -> {
+                expression(random, builder, depth - 1);
+                builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                expression(random, builder, depth - 1);
+            }
+        }
+    }
+
+    static String arithmeticLoop(int iterations) {
+        return """
+            {
+                var sum = 0;
+                for (var i = 0; i < %d; i = i + 1) {
+                    sum = sum + i * 2 - (i / 4);
+                }
+                print sum;
+            }
+            """.formatted(iterations);
+    }
+
+    static String concatenation(int iterations) {
+        return """
+            {
+                var report = "";
+                for (var i = 0; i < %d; i = i + 1) {
+                    report = report + "line " + i + " of the report ";
+                }
+                print report;
+            }
+            """.formatted(iterations);
+    }
+
+    /**
+     * A loop {@code depth} blocks deep reading a variable from every one of them.
+     */
+    static String nestedBlocks(int depth, int iterations) {
+        var builder = new StringBuilder();
+        var sum = new StringBuilder("sum");
+        for (int i = 0; i < depth; i++) {
+            builder.append("{ var v").append(i).append(" = ").append(i).append(";\n");
+            sum.append(" + v").append(i);
+        }
+
+        builder.append("""
+            var sum = 0;
+            for (var i = 0; i < %d; i = i + 1) {
+                sum = %s;
+            }
+            print sum;
+            """.formatted(iterations, sum));
+        builder.append("}\n".repeat(depth));
+
+        return builder.toString();
+    }
+
+    static List<Statement> resolve(String source) {
+        var statements = new Parser(new Lexer(source).scanColumnar()).parse();
+
+        return new Resolver().resolve(statements);
+    }
+
+    static OutputSink discard() {
+        return new OutputSink(OutputStream.nullOutputStream(), OutputSink.DEFAULT_SIZE, OutputSink.Flush.FULL);
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.gdoenlen.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Variable lookups: a local {@code depth} {@link Frame}s up from the
+ * current one, and a global in the {@link Environment}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class EnvironmentBenchmark {
+    @Param({ "0", "1", "4", "16" })
+    public int depth;
+
+    private Frame frame;
+    private Environment globals;
+    private Token global;
+
+    @Setup
+    public void setup() {
+        var outermost = new Frame(4, null);
+        outermost.define(3, Value.number(1.0), null);
+        this.frame = outermost;
+        for (int i = 0; i < this.depth; i++) {
+            this.frame = new Frame(4, this.frame);
+        }
+
+        this.globals = new Environment();
+        this.global = new Token(TokenType.IDENTIFIER, "global", null, 1, new Symbols().intern("global"));
+        this.globals.define(this.global, 1.0);
+    }
+
+    @Benchmark
+    public long local() {
+        return this.frame.get(this.depth, 3);
+    }
+
+    @Benchmark
+    public Object global() {
+        return this.globals.get(this.global);
+    }
+}
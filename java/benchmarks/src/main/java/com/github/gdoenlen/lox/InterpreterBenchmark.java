@@ -0,0 +1,71 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolved and flattened programs run by the tree walking {@link Interpreter}:
+ * an arithmetic loop, string concatenation and a loop eight blocks deep, that
+ * one also as resolved, a frame for every block. Output goes nowhere.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+    @Param({ "100000" })
+    public int iterations;
+
+    private List<Statement> arithmetic;
+    private List<Statement> concatenation;
+    private List<Statement> nestedBlocks;
+    private List<Statement> nestedFrames;
+
+    @Setup
+    public void setup() {
+        var flattener = new ScopeFlattener();
+        this.arithmetic = flattener.flatten(Corpus.resolve(Corpus.arithmeticLoop(this.iterations)));
+        this.concatenation = flattener.flatten(Corpus.resolve(Corpus.concatenation(this.iterations)));
+        this.nestedFrames = Corpus.resolve(Corpus.nestedBlocks(8, this.iterations));
+        this.nestedBlocks = flattener.flatten(this.nestedFrames);
+    }
+
+    @Benchmark
+    public void arithmeticLoop() {
+        run(this.arithmetic);
+    }
+
+    @Benchmark
+    public void concatenation() {
+        run(this.concatenation);
+    }
+
+    @Benchmark
+    public void nestedBlocks() {
+        run(this.nestedBlocks);
+    }
+
+    @Benchmark
+    public void nestedFrames() {
+        run(this.nestedFrames);
+    }
+
+    private static void run(List<Statement> program) {
+        var interpreter = new Interpreter(new Environment(), Corpus.discard());
+        program.forEach(interpreter::interpret);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.gdoenlen.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexing throughput of the scalar and the Vector API {@link CharScanner}
+ * over a data style script: indentation, comments, long strings and long
+ * identifiers. The {@code megabytes} counter is the throughput in MB/s.
+ *
+ * java -jar target/benchmarks.jar LexerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+    @Param({ "scalar", "vector" })
+    public String scanner;
+
+    /** Of source, in MB. */
+    @Param({ "4" })
+    public int size;
+
+    private String source;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.megabytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        this.source = source(this.size * 1_000_000);
+    }
+
+    static String source(int size) {
+        var builder = new StringBuilder(size + 256);
+        for (int i = 0; builder.length() < size; i++) {
+            builder.append("        // record ").append(i).append(": lorem ipsum dolor sit amet, consectetur adipiscing\n")
+                .append("        var descriptionOfRecord").append(i).append(" = \"")
+                .append("the quick brown fox jumps over the lazy dog ".repeat(3)).append("\";\n")
+                .append("        if (descriptionOfRecord").append(i).append(" != nil) {\n")
+                .append("                print descriptionOfRecord").append(i).append(" + \"").append(i * 7919L).append("\";\n")
+                .append("        }\n");
+        }
+
+        return builder.toString();
+    }
+
+    @Benchmark
+    public int lex(Throughput throughput) {
+        CharScanner chars = this.scanner.equals("vector")
+            ? CharScanner.vector(this.source)
+            : CharScanner.scalar(this.source);
+        TokenBuffer tokens = new Lexer(this.source, chars).scanColumnar();
+        throughput.megabytes += this.source.length() / 1e6;
+
+        return tokens.size();
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Lexer#scan()}, which materializes every {@link Token}, against
+ * {@link Lexer#scanColumnar()} on a REPL sized and a script sized input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class LexerScanBenchmark {
+    /** Of source, in characters. */
+    @Param({ "200", "1000000" })
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        this.source = Corpus.statements(this.size);
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Lexer(this.source).scan();
+    }
+
+    @Benchmark
+    public int scanColumnar() {
+        return new Lexer(this.source).scanColumnar().size();
+    }
+}
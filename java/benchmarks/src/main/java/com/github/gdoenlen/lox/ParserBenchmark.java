@@ -0,0 +1,59 @@
+package com.github.gdoenlen.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Parser#parse()} on pre-lexed input: one deeply nested expression,
+ * a lot of ordinary statements, and a lot of long expressions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param({ "10", "200" })
+    public int depth;
+
+    @Param({ "1000000" })
+    public int size;
+
+    private TokenBuffer deep;
+    private TokenBuffer statements;
+    private TokenBuffer expressions;
+
+    @Setup
+    public void setup() {
+        this.deep = new Lexer(Corpus.deepExpression(this.depth)).scanColumnar();
+        this.statements = new Lexer(Corpus.statements(this.size)).scanColumnar();
+        this.expressions = new Lexer(Corpus.expressions(this.size)).scanColumnar();
+    }
+
+    @Benchmark
+    public int deepExpression() {
+        return new Parser(this.deep).parse().size();
+    }
+
+    @Benchmark
+    public int manyStatements() {
+        return new Parser(this.statements).parse().size();
+    }
+
+    @Benchmark
+    public int expressions() {
+        return new Parser(this.expressions).parse().size();
+    }
+}
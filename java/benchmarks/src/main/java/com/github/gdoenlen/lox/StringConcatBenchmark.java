@@ -0,0 +1,60 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds a string of {@code megabytes} MB with {@code s = s + line;} in a
+ * {@code for} loop and prints it, which flattens the {@link Rope}. With
+ * ropes the time grows linearly with the size, copying the whole string on
+ * every {@code +} made it grow quadratically.
+ *
+ * java -jar target/benchmarks.jar StringConcatBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class StringConcatBenchmark {
+    private static final String LINE = "0123456789".repeat(10);
+
+    @Param({ "1", "2", "5", "10" })
+    public int megabytes;
+
+    private List<Statement> program;
+
+    @Setup
+    public void setup() {
+        int lines = this.megabytes * 1_000_000 / LINE.length();
+        String source = """
+            var line = "%s";
+            var s = "";
+            for (var i = 0; i < %d; i = i + 1) {
+                s = s + line;
+            }
+            print s;
+            """.formatted(LINE, lines);
+
+        this.program = new ScopeFlattener().flatten(Corpus.resolve(source));
+    }
+
+    @Benchmark
+    public void concatenate() {
+        var interpreter = new Interpreter(new Environment(), Corpus.discard());
+        this.program.forEach(interpreter::interpret);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * {@code + - * /}. Starts {@link Uninitialized} and rewrites itself on first
+ * execution to {@link Doubles}, which works on unboxed operands, when both
+ * operands were numbers or to {@link Generic} otherwise. {@link Doubles}
+ * deoptimizes to {@link Generic} the first time an operand isn't a number,
+ * e.g. a string showing up in {@code +}.
+ */
+abstract class ArithmeticNode extends BinaryNode {
+    private ArithmeticNode(TokenType type, ExprNode left, ExprNode right) {
+        super(type, left, right);
+    }
+
+    static ArithmeticNode create(TokenType type, ExprNode left, ExprNode right) {
+        return new Uninitialized(type, left, right);
+    }
+
+    static Object generic(TokenType type, Object left, Object right) {
+        return switch (type) {
+            case MINUS -> (Double) left - (Double) right;
+            case PLUS -> Operators.plus(left, right);
+            case SLASH -> (Double) left / (Double) right;
+            case STAR -> (Double) left * (Double) right;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    static double apply(TokenType type, double left, double right) {
+        return switch (type) {
+            case MINUS -> left - right;
+            case PLUS -> left + right;
+            case SLASH -> left / right;
+            case STAR -> left * right;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    private static final class Uninitialized extends ArithmeticNode {
+        Uninitialized(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            Object l = this.left.execute(frame);
+            Object r = this.right.execute(frame);
+            if (l instanceof Double && r instanceof Double) {
+                this.replace(new Doubles(this.type, this.left, this.right));
+            } else {
+                this.replace(new Generic(this.type, this.left, this.right));
+            }
+
+            return generic(this.type, l, r);
+        }
+    }
+
+    private static final class Doubles extends ArithmeticNode {
+        Doubles(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result();
+            }
+        }
+
+        @Override
+        double executeDouble(NodeFrame frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = this.left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return this.deoptimize(ex.result(), this.right.execute(frame));
+            }
+
+            double r;
+            try {
+                r = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return this.deoptimize(l, ex.result());
+            }
+
+            return apply(this.type, l, r);
+        }
+
+        private double deoptimize(Object l, Object r) throws UnexpectedResultException {
+            this.replace(new Generic(this.type, this.left, this.right));
+            Object result = generic(this.type, l, r);
+            if (result instanceof Double d) {
+                return d;
+            }
+
+            throw new UnexpectedResultException(result);
+        }
+    }
+
+    private static final class Generic extends ArithmeticNode {
+        Generic(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            return generic(this.type, this.left.execute(frame), this.right.execute(frame));
+        }
+    }
+}
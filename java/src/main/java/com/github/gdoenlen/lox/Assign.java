@@ -1,4 +1,15 @@
 package com.github.gdoenlen.lox;
 
-record Assign(Token token, Expr value) implements Expr {
+record Assign(Token token, Expr value, int depth, int slot) implements Expr {
+    Assign(Token token, Expr value) {
+        this(token, value, Resolver.GLOBAL, Resolver.GLOBAL);
+    }
+
+    int symbol() {
+        return this.token.symbol();
+    }
+
+    boolean isGlobal() {
+        return this.depth == Resolver.GLOBAL;
+    }
 }
@@ -0,0 +1,24 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Locale;
+
+/**
+ * The ways {@link Main} can execute a resolved program.
+ */
+enum Backend {
+    /** Walks the statement tree with the {@link Interpreter}. */
+    TREE,
+    /** Compiles to a {@link Chunk} and runs it on the {@link VirtualMachine}. */
+    VM,
+    /** Builds a self specializing {@link Node} tree and runs it with the {@link NodeInterpreter}. */
+    AST,
+    /** Compiles to a hidden JVM class with the {@link JvmCompiler} and runs it with the {@link JvmInterpreter}. */
+    JVM;
+
+    /**
+     * @throws IllegalArgumentException when {@code name} isn't a backend
+     */
+    static Backend of(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,387 @@
+package com.github.gdoenlen.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * {@code lox bench [--runs=N] [--jvms=N] [--backend=...] [--archive=file] dir/}
+ * runs every {@code .lox} file in {@code dir}, and a large generated program,
+ * {@code runs} times in this JVM and {@code jvms} times in fresh ones.
+ *
+ * In process every phase is timed on its own, parse includes resolving and
+ * execute includes compiling for the backends that do, with the bytes the
+ * thread allocated. The first run is reported as cold, the median of the
+ * others as warm. Fresh JVMs are timed from start to their first output and
+ * to exit, and with {@code --archive} again with that class data archive,
+ * see {@link Training}.
+ *
+ * A summary goes to stderr, the results as JSON to stdout so runs can be
+ * saved and diffed.
+ */
+@SuppressWarnings("java:S106") // s.out
+final class Bench {
+    private static final int GENERATED_SIZE = 2_000_000;
+
+    private record Program(String name, Path path, String source) {}
+
+    private record Run(long lex, long parse, long execute, long allocated) {
+        long total() {
+            return this.lex + this.parse + this.execute;
+        }
+    }
+
+    /**
+     * A fresh JVM, {@code firstOutput} is -1 if it printed nothing.
+     */
+    private record Fork(long firstOutput, long exit) {}
+
+    private record Result(Program program, boolean failed, List<Run> runs, List<Fork> processes, List<Fork> archived) {}
+
+    private final Backend backend;
+    private final int runs;
+    private final int jvms;
+    private final Path archive;
+    private final com.sun.management.ThreadMXBean threads;
+
+    private Bench(Backend backend, int runs, int jvms, Path archive) {
+        this.backend = backend;
+        this.runs = runs;
+        this.jvms = jvms;
+        this.archive = archive;
+        this.threads = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported() ? bean : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException on bad arguments
+     */
+    static void main(String[] args) {
+        Backend backend = Backend.TREE;
+        int runs = 5;
+        int jvms = 3;
+        Path archive = null;
+        Path dir = null;
+        for (String arg : args) {
+            if (arg.startsWith("--backend=")) {
+                backend = Backend.of(arg.substring("--backend=".length()));
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--jvms=")) {
+                jvms = Integer.parseInt(arg.substring("--jvms=".length()));
+            } else if (arg.startsWith("--archive=")) {
+                archive = Path.of(arg.substring("--archive=".length()));
+            } else if (dir == null && !arg.startsWith("-")) {
+                dir = Path.of(arg);
+            } else {
+                throw new IllegalArgumentException(arg);
+            }
+        }
+
+        if (dir == null || runs < 1 || jvms < 0) {
+            throw new IllegalArgumentException("Expected a directory and positive counts");
+        }
+
+        var bench = new Bench(backend, runs, jvms, archive);
+        var results = new ArrayList<Result>();
+        for (Program program : programs(dir)) {
+            Result result = bench.measure(program);
+            System.err.println(summary(result));
+            results.add(result);
+        }
+
+        System.out.println(bench.json(results));
+    }
+
+    private static List<Program> programs(Path dir) {
+        var programs = new ArrayList<Program>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.filter(p -> p.toString().endsWith(".lox")).sorted().toList()) {
+                programs.add(new Program(path.getFileName().toString(), path, Files.readString(path)));
+            }
+
+            String generated = generate(GENERATED_SIZE);
+            Path path = Files.createTempFile("lox-bench", ".lox");
+            path.toFile().deleteOnExit();
+            Files.writeString(path, generated);
+            programs.add(new Program("(generated)", path, generated));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return programs;
+    }
+
+    /**
+     * About {@code size} characters of blocks that declare, compare,
+     * branch and print, the same every time.
+     */
+    private static String generate(int size) {
+        var builder = new StringBuilder(size + 256);
+        for (int i = 0; builder.length() < size; i++) {
+            String name = "value" + i;
+            builder.append("{\n")
+                .append("    var ").append(name).append(" = ").append(i % 1000).append(" * 2.5 - 1;\n")
+                .append("    if (").append(name).append(" > ").append(i % 2500).append(") {\n")
+                .append("        print \"large \" + ").append(name).append(";\n")
+                .append("    } else {\n")
+                .append("        ").append(name).append(" = ").append(name).append(" + 1;\n")
+                .append("    }\n")
+                .append("}\n");
+        }
+
+        return builder.toString();
+    }
+
+    private Result measure(Program program) {
+        var runs = new ArrayList<Run>(this.runs);
+        for (int i = 0; i < this.runs; i++) {
+            Run run = this.run(program.source());
+            if (run == null) {
+                return new Result(program, true, runs, List.of(), List.of());
+            }
+
+            runs.add(run);
+        }
+
+        var processes = new ArrayList<Fork>(this.jvms);
+        var archived = new ArrayList<Fork>(this.archive == null ? 0 : this.jvms);
+        for (int i = 0; i < this.jvms; i++) {
+            processes.add(this.fork(program.path(), null));
+            if (this.archive != null) {
+                archived.add(this.fork(program.path(), this.archive));
+            }
+        }
+
+        return new Result(program, false, runs, processes, archived);
+    }
+
+    /**
+     * One run with fresh globals and a fresh backend, {@code null} if the program doesn't compile.
+     */
+    private Run run(String source) {
+        Main.clearError();
+        long allocated = this.allocated();
+        long start = System.nanoTime();
+        TokenBuffer tokens = new Lexer(source).scanColumnar();
+        long lexed = System.nanoTime();
+        List<Statement> statements = new Resolver().resolve(new Parser(tokens).parse());
+        long parsed = System.nanoTime();
+        if (Main.hadError()) {
+            return null;
+        }
+
+        this.execute(statements);
+        long executed = System.nanoTime();
+        if (Main.hadError()) {
+            return null;
+        }
+
+        return new Run(lexed - start, parsed - lexed, executed - parsed, this.allocated() - allocated);
+    }
+
+    private void execute(Collection<Statement> statements) {
+        var out = new OutputSink(OutputStream.nullOutputStream(), OutputSink.DEFAULT_SIZE, OutputSink.Flush.FULL);
+        switch (this.backend) {
+            case TREE -> new ScopeFlattener().flatten(statements).forEach(new Interpreter(new Environment(), out)::interpret);
+            case VM -> {
+                Chunk chunk = new BytecodeCompiler().compile(statements);
+                if (!Main.hadError()) {
+                    new VirtualMachine(out).run(chunk);
+                }
+            }
+            case AST -> new NodeInterpreter(out).interpret(statements);
+            case JVM -> new JvmInterpreter(out).interpret(statements);
+        }
+    }
+
+    private long allocated() {
+        return this.threads == null ? -1 : this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * The java command and options this JVM was started with, less the
+     * class data archive it may have been started with.
+     */
+    static List<String> java() {
+        var command = new ArrayList<String>();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        command.add(ProcessHandle.current().info().command().orElse(java));
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!argument.startsWith("-XX:SharedArchiveFile=") && !argument.startsWith("-Xlog:cds")) {
+                command.add(argument);
+            }
+        }
+
+        return command;
+    }
+
+    /**
+     * Wall time of running the file in a new JVM started the way this one
+     * was, with {@code archive} if it's not {@code null}.
+     */
+    private Fork fork(Path path, Path archive) {
+        List<String> command = java();
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+
+        command.addAll(List.of(
+            "-cp",
+            System.getProperty("java.class.path"),
+            Main.class.getName(),
+            "--backend=" + this.backend.name().toLowerCase(Locale.ROOT),
+            path.toString()
+        ));
+
+        long start = System.nanoTime();
+        long firstOutput = -1;
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            try (InputStream out = process.getInputStream()) {
+                if (out.read() >= 0) {
+                    firstOutput = System.nanoTime() - start;
+                    out.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+
+            process.waitFor();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+
+        return new Fork(firstOutput, System.nanoTime() - start);
+    }
+
+    private static String summary(Result result) {
+        if (result.failed()) {
+            return String.format("%-24s failed to compile", result.program().name());
+        }
+
+        Run cold = result.runs().get(0);
+        Run warm = warm(result.runs());
+        String summary = String.format(
+            "%-24s cold %8.2f ms  warm %8.2f ms (lex %.2f, parse %.2f, execute %.2f)  %,d bytes  jvm %8.2f ms (first print %.2f)",
+            result.program().name(),
+            cold.total() / 1e6,
+            warm.total() / 1e6,
+            warm.lex() / 1e6,
+            warm.parse() / 1e6,
+            warm.execute() / 1e6,
+            warm.allocated(),
+            median(exits(result.processes())) / 1e6,
+            median(firstOutputs(result.processes())) / 1e6
+        );
+        if (result.archived().isEmpty()) {
+            return summary;
+        }
+
+        return String.format(
+            "%s  archived %8.2f ms (first print %.2f)",
+            summary,
+            median(exits(result.archived())) / 1e6,
+            median(firstOutputs(result.archived())) / 1e6
+        );
+    }
+
+    private static long[] exits(List<Fork> forks) {
+        return forks.stream().mapToLong(Fork::exit).toArray();
+    }
+
+    private static long[] firstOutputs(List<Fork> forks) {
+        return forks.stream().mapToLong(Fork::firstOutput).toArray();
+    }
+
+    /**
+     * Median of every phase over the runs after the first, or the first if there's only one.
+     */
+    private static Run warm(List<Run> runs) {
+        List<Run> warm = runs.size() > 1 ? runs.subList(1, runs.size()) : runs;
+
+        return new Run(
+            median(warm.stream().mapToLong(Run::lex).toArray()),
+            median(warm.stream().mapToLong(Run::parse).toArray()),
+            median(warm.stream().mapToLong(Run::execute).toArray()),
+            median(warm.stream().mapToLong(Run::allocated).toArray())
+        );
+    }
+
+    private static long median(long[] values) {
+        if (values.length == 0) {
+            return 0;
+        }
+
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        return sorted[sorted.length / 2];
+    }
+
+    private String json(List<Result> results) {
+        var json = new StringBuilder();
+        json.append("{\n")
+            .append("  \"backend\": \"").append(this.backend.name().toLowerCase(Locale.ROOT)).append("\",\n")
+            .append("  \"runs\": ").append(this.runs).append(",\n")
+            .append("  \"jvms\": ").append(this.jvms).append(",\n")
+            .append("  \"archive\": ")
+            .append(this.archive == null ? "null" : "\"" + escape(this.archive.toString()) + "\"")
+            .append(",\n")
+            .append("  \"java\": \"").append(escape(System.getProperty("java.version"))).append("\",\n")
+            .append("  \"programs\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                .append("    {\n")
+                .append("      \"name\": \"").append(escape(result.program().name())).append("\",\n")
+                .append("      \"chars\": ").append(result.program().source().length()).append(",\n")
+                .append("      \"failed\": ").append(result.failed());
+            if (!result.failed()) {
+                json.append(",\n      \"cold\": ").append(json(result.runs().get(0)))
+                    .append(",\n      \"warm\": ").append(json(warm(result.runs())))
+                    .append(",\n      \"runs_ns\": ")
+                    .append(Arrays.toString(result.runs().stream().mapToLong(Run::total).toArray()))
+                    .append(",\n      \"jvm_ns\": ").append(Arrays.toString(exits(result.processes())))
+                    .append(",\n      \"jvm_first_output_ns\": ")
+                    .append(Arrays.toString(firstOutputs(result.processes())));
+                if (this.archive != null) {
+                    json.append(",\n      \"archived_jvm_ns\": ").append(Arrays.toString(exits(result.archived())))
+                        .append(",\n      \"archived_jvm_first_output_ns\": ")
+                        .append(Arrays.toString(firstOutputs(result.archived())));
+                }
+            }
+
+            json.append("\n    }");
+        }
+
+        return json.append("\n  ]\n}").toString();
+    }
+
+    private static String json(Run run) {
+        return String.format(
+            "{ \"lex_ns\": %d, \"parse_ns\": %d, \"execute_ns\": %d, \"allocated_bytes\": %d }",
+            run.lex(),
+            run.parse(),
+            run.execute(),
+            run.allocated()
+        );
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
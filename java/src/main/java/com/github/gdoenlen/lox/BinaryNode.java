@@ -0,0 +1,25 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Child handling shared by {@link ArithmeticNode} and {@link ComparisonNode}.
+ */
+abstract class BinaryNode extends ExprNode {
+    protected final TokenType type;
+    protected ExprNode left;
+    protected ExprNode right;
+
+    BinaryNode(TokenType type, ExprNode left, ExprNode right) {
+        this.type = type;
+        this.left = this.adopt(left);
+        this.right = this.adopt(right);
+    }
+
+    @Override
+    final void replaceChild(Node oldChild, Node newChild) {
+        if (this.left == oldChild) {
+            this.left = (ExprNode) newChild;
+        } else if (this.right == oldChild) {
+            this.right = (ExprNode) newChild;
+        }
+    }
+}
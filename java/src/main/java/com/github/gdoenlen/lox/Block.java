@@ -2,5 +2,18 @@ package com.github.gdoenlen.lox;
 
 import java.util.Collection;
 
-record Block(Collection<Statement> statements) implements Statement {
+/**
+ * A lexical scope. {@code slots} is the number of locals declared
+ * directly in this block and is filled in by the {@link Resolver}.
+ * A {@code flattened} block has no frame of its own and runs in the one
+ * around it, see {@link ScopeFlattener}.
+ */
+record Block(Collection<Statement> statements, int slots, boolean flattened) implements Statement {
+    Block(Collection<Statement> statements) {
+        this(statements, 0);
+    }
+
+    Block(Collection<Statement> statements, int slots) {
+        this(statements, slots, false);
+    }
 }
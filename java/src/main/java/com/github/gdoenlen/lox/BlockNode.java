@@ -0,0 +1,25 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * A block, only allocates a {@link NodeFrame} when it declares locals.
+ */
+final class BlockNode extends StatementNode {
+    private final int slots;
+    private final StatementNode[] statements;
+
+    BlockNode(int slots, StatementNode[] statements) {
+        this.slots = slots;
+        this.statements = statements;
+        for (StatementNode statement : statements) {
+            this.adopt(statement);
+        }
+    }
+
+    @Override
+    void execute(NodeFrame frame) {
+        NodeFrame scope = this.slots == 0 ? frame : new NodeFrame(this.slots, frame);
+        for (StatementNode statement : this.statements) {
+            statement.execute(scope);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles resolved statements into a {@link Chunk} for the {@link VirtualMachine}.
+ *
+ * Every local gets a fixed index in the VM's locals array: a block's slots
+ * start where its enclosing block's slots end, so the resolver's
+ * (depth, slot) pairs become a single absolute index at compile time.
+ */
+class BytecodeCompiler {
+    private static final int MAX_INDEX = 0xFFFF;
+
+    private byte[] code = new byte[256];
+    private int[] lines = new int[256];
+    private int count = 0;
+    private int line = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+
+    private int[] bases = new int[16];
+    private int scopes = 0;
+    private int locals = 0;
+    private int maxLocals = 0;
+
+    private int depth = 0;
+    private int maxDepth = 0;
+
+    Chunk compile(Collection<Statement> statements) {
+        for (Statement statement : statements) {
+            this.compile(statement);
+        }
+
+        this.emit(OpCode.RETURN, 0);
+
+        return new Chunk(
+            Arrays.copyOf(this.code, this.count),
+            Arrays.copyOf(this.lines, this.count),
+            this.constants.toArray(),
+            this.maxLocals,
+            this.maxDepth
+        );
+    }
+
+    @SuppressWarnings("unused")
+    private void compile(Statement statement) {
+        switch (statement) {
+            case Block b -> {
+                this.beginScope(b.slots());
+                b.statements().forEach(this::compile);
+                this.endScope();
+            }
+            case Conditional c -> {
+                this.compile(c.condition());
+                int elseJump = this.emitJump(OpCode.JUMP_IF_FALSE, -1);
+                this.compile(c.thenBranch());
+                if (c.elseBranch() instanceof NullStatement) {
+                    this.patchJump(elseJump);
+                } else {
+                    int endJump = this.emitJump(OpCode.JUMP, 0);
+                    this.patchJump(elseJump);
+                    this.compile(c.elseBranch());
+                    this.patchJump(endJump);
+                }
+            }
+            case Expression e -> {
+                if (e.expr() instanceof Assign a) {
+                    this.compile(a.value());
+                    this.store(a);
+                } else {
+                    this.compile(e.expr());
+                    this.emit(OpCode.POP, -1);
+                }
+            }
+            case NullStatement ns -> {}
+            case Print p -> {
+                this.compile(p.value());
+                this.emit(OpCode.PRINT, -1);
+            }
+            case Var v -> {
+                this.line = v.token().line();
+                this.compile(v.initializer());
+                if (v.isGlobal()) {
+                    this.emitIndexed(OpCode.DEFINE_GLOBAL, -1, this.constant(v.token()));
+                } else {
+                    this.emitIndexed(OpCode.STORE_LOCAL, -1, this.local(0, v.slot()));
+                }
+            }
+            case While w -> {
+                int start = this.count;
+                this.compile(w.condition());
+                int exitJump = this.emitJump(OpCode.JUMP_IF_FALSE, -1);
+                this.compile(w.body());
+                this.emit(OpCode.JUMP, 0);
+                this.emitInt(start);
+                this.patchJump(exitJump);
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private void compile(Expr expr) {
+        switch (expr) {
+            case Assign a -> {
+                this.compile(a.value());
+                this.line = a.token().line();
+                if (a.isGlobal()) {
+                    this.emitIndexed(OpCode.SET_GLOBAL, 0, this.constant(a.token()));
+                } else {
+                    this.emitIndexed(OpCode.SET_LOCAL, 0, this.local(a.depth(), a.slot()));
+                }
+            }
+            case Binary b -> {
+                this.compile(b.left());
+                this.compile(b.right());
+                this.line = b.operator().line();
+                this.emit(binaryOp(b.tokenType()), -1);
+            }
+            case Grouping g -> this.compile(g.expr());
+            case Literal l -> this.literal(l.value());
+            case Logical l -> {
+                this.compile(l.left());
+                byte op = l.isOr() ? OpCode.JUMP_IF_TRUE_OR_POP : OpCode.JUMP_IF_FALSE_OR_POP;
+                int end = this.emitJump(op, -1);
+                this.compile(l.right());
+                this.patchJump(end);
+            }
+            case NullExpr n -> this.emit(OpCode.NIL, 1);
+            case Unary u -> {
+                this.compile(u.right());
+                this.line = u.operator().line();
+                this.emit(unaryOp(u.tokenType()), 0);
+            }
+            case Variable v -> {
+                this.line = v.token().line();
+                if (v.isGlobal()) {
+                    this.emitIndexed(OpCode.GET_GLOBAL, 1, this.constant(v.token()));
+                } else {
+                    this.emitIndexed(OpCode.GET_LOCAL, 1, this.local(v.depth(), v.slot()));
+                }
+            }
+        }
+    }
+
+    /**
+     * An assignment whose value is discarded, pops instead of leaving the value behind.
+     */
+    private void store(Assign a) {
+        this.line = a.token().line();
+        if (a.isGlobal()) {
+            this.emitIndexed(OpCode.SET_GLOBAL, 0, this.constant(a.token()));
+            this.emit(OpCode.POP, -1);
+        } else {
+            this.emitIndexed(OpCode.STORE_LOCAL, -1, this.local(a.depth(), a.slot()));
+        }
+    }
+
+    private void literal(Object value) {
+        if (value == null) {
+            this.emit(OpCode.NIL, 1);
+        } else if (Boolean.TRUE.equals(value)) {
+            this.emit(OpCode.TRUE, 1);
+        } else if (Boolean.FALSE.equals(value)) {
+            this.emit(OpCode.FALSE, 1);
+        } else {
+            this.emitIndexed(OpCode.CONSTANT, 1, this.constant(value));
+        }
+    }
+
+    private static byte binaryOp(TokenType type) {
+        return switch (type) {
+            case BANG_EQUAL -> OpCode.NOT_EQUAL;
+            case EQUAL_EQUAL -> OpCode.EQUAL;
+            case GREATER -> OpCode.GREATER;
+            case GREATER_EQUAL -> OpCode.GREATER_EQUAL;
+            case LESS -> OpCode.LESS;
+            case LESS_EQUAL -> OpCode.LESS_EQUAL;
+            case MINUS -> OpCode.SUBTRACT;
+            case PLUS -> OpCode.ADD;
+            case SLASH -> OpCode.DIVIDE;
+            case STAR -> OpCode.MULTIPLY;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    private static byte unaryOp(TokenType type) {
+        return switch (type) {
+            case BANG -> OpCode.NOT;
+            case MINUS -> OpCode.NEGATE;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    private void beginScope(int slots) {
+        if (this.scopes == this.bases.length) {
+            this.bases = Arrays.copyOf(this.bases, this.scopes * 2);
+        }
+
+        this.bases[this.scopes++] = this.locals;
+        this.locals += slots;
+        this.maxLocals = Math.max(this.maxLocals, this.locals);
+    }
+
+    private void endScope() {
+        this.locals = this.bases[--this.scopes];
+    }
+
+    private int local(int depth, int slot) {
+        return this.bases[this.scopes - 1 - depth] + slot;
+    }
+
+    private int constant(Object value) {
+        Integer index = this.constantIndexes.get(value);
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(value);
+            this.constantIndexes.put(value, index);
+        }
+
+        return index;
+    }
+
+    private void emitIndexed(byte op, int stackEffect, int index) {
+        if (index > MAX_INDEX) {
+            Main.error(this.line, "Too many constants or locals in one program.");
+        }
+
+        this.emit(op, stackEffect);
+        this.emitByte((byte) (index >>> 8));
+        this.emitByte((byte) index);
+    }
+
+    private int emitJump(byte op, int stackEffect) {
+        this.emit(op, stackEffect);
+        int operand = this.count;
+        this.emitInt(-1);
+
+        return operand;
+    }
+
+    private void patchJump(int operand) {
+        int target = this.count;
+        this.code[operand] = (byte) (target >>> 24);
+        this.code[operand + 1] = (byte) (target >>> 16);
+        this.code[operand + 2] = (byte) (target >>> 8);
+        this.code[operand + 3] = (byte) target;
+    }
+
+    private void emit(byte op, int stackEffect) {
+        this.emitByte(op);
+        this.depth += stackEffect;
+        this.maxDepth = Math.max(this.maxDepth, this.depth);
+    }
+
+    private void emitInt(int value) {
+        this.emitByte((byte) (value >>> 24));
+        this.emitByte((byte) (value >>> 16));
+        this.emitByte((byte) (value >>> 8));
+        this.emitByte((byte) value);
+    }
+
+    private void emitByte(byte b) {
+        if (this.count == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.count * 2);
+            this.lines = Arrays.copyOf(this.lines, this.count * 2);
+        }
+
+        this.code[this.count] = b;
+        this.lines[this.count] = this.line;
+        this.count++;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.gdoenlen.lox;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The runs of characters the {@link Lexer} skips over: blanks, the body of
+ * strings and comments, identifiers and digits. Every method returns the
+ * index of the first character at or after {@code from} that ends the run,
+ * or the length of the source.
+ *
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector} and has
+ * vector registers to speak of, sources big enough to be worth copying into
+ * a {@code byte[]} are scanned with the Vector API, otherwise, or with
+ * {@code -Dlox.vector=false}, one character at a time.
+ */
+sealed interface CharScanner permits ScalarCharScanner, VectorCharScanner {
+    /** Below this the copy costs more than vectorizing saves. */
+    int VECTOR_THRESHOLD = 4 * 1024;
+
+    static CharScanner of(String source) {
+        if (source.length() >= VECTOR_THRESHOLD && Vectors.AVAILABLE) {
+            return vector(source);
+        }
+
+        return scalar(source);
+    }
+
+    static CharScanner scalar(String source) {
+        return new ScalarCharScanner(source);
+    }
+
+    static CharScanner vector(String source) {
+        return new VectorCharScanner(source.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /** Skips spaces, tabs and carriage returns. Newlines are left to count lines. */
+    int skipBlanks(int from);
+
+    int indexOf(char c, int from);
+
+    int count(char c, int from, int to);
+
+    /** Skips ASCII letters and digits, anything else is left to the caller. */
+    int skipAlphaNumerics(int from);
+
+    int skipDigits(int from);
+
+    final class Vectors {
+        static final boolean AVAILABLE = available();
+
+        private Vectors() {}
+
+        private static boolean available() {
+            if (Boolean.parseBoolean(System.getProperty("lox.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    return VectorCharScanner.isAccelerated();
+                } catch (LinkageError ex) {
+                    return false;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * A compiled program for the {@link VirtualMachine}.
+ *
+ * @param code the instructions, see {@link OpCode}
+ * @param lines the source line of every byte in {@code code}
+ * @param constants literal values and global name tokens referenced by index
+ * @param locals the number of local slots the program needs
+ * @param stack the maximum operand stack depth the program reaches
+ */
+record Chunk(byte[] code, int[] lines, Object[] constants, int locals, int stack) {
+}
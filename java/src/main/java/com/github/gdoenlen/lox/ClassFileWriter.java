@@ -0,0 +1,306 @@
+package com.github.gdoenlen.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of a class file writer for the {@link JvmCompiler}: a constant
+ * pool and a single static method.
+ *
+ * Classes are written as version 49 (Java 5) so the verifier infers types
+ * itself and no StackMapTable has to be computed. Anything that doesn't fit
+ * the class file format's limits throws {@link UnsupportedOperationException}.
+ */
+final class ClassFileWriter {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int CHECKCAST = 0xc0;
+    static final int WIDE = 0xc4;
+
+    private static final int MAX_CODE = 0xFFFF;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private byte[] code = new byte[1024];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals = 0;
+    private final List<Label> labels = new ArrayList<>();
+
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> jumps = new ArrayList<>();
+    }
+
+    int utf8(String value) {
+        return this.entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        }, 1);
+    }
+
+    int classRef(String internalName) {
+        int name = this.utf8(internalName);
+
+        return this.entry("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        }, 1);
+    }
+
+    int string(String value) {
+        int utf8 = this.utf8(value);
+
+        return this.entry("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(utf8);
+        }, 1);
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+
+        return this.entry("D" + bits, out -> {
+            out.writeByte(6);
+            out.writeLong(bits);
+        }, 2);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return this.memberRef(10, owner, name, descriptor);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return this.memberRef(9, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int clazz = this.classRef(owner);
+        int nameIndex = this.utf8(name);
+        int descriptorIndex = this.utf8(descriptor);
+        int nameAndType = this.entry("N" + name + ' ' + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+
+        return this.entry(tag + owner + '.' + name + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(clazz);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, EntryWriter writer, int size) {
+        Integer existing = this.entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            writer.write(this.pool);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (IllegalArgumentException ex) {
+            // writeUTF refuses strings longer than 64k
+            throw new UnsupportedOperationException("Constant too large for a class file", ex);
+        }
+
+        int index = this.poolCount;
+        this.poolCount += size;
+        if (this.poolCount > 0xFFFF) {
+            throw new UnsupportedOperationException("Too many constants for a class file");
+        }
+
+        this.entries.put(key, index);
+
+        return index;
+    }
+
+    void reserveLocals(int count) {
+        this.maxLocals = Math.max(this.maxLocals, count);
+    }
+
+    void op(int opcode, int stackEffect) {
+        this.u1(opcode);
+        this.adjustStack(stackEffect);
+    }
+
+    void op(int opcode, int stackEffect, int u2) {
+        this.u1(opcode);
+        this.u2(u2);
+        this.adjustStack(stackEffect);
+    }
+
+    void local(int opcode, int stackEffect, int index) {
+        if (index > 0xFF) {
+            this.u1(WIDE);
+            this.u1(opcode);
+            this.u2(index);
+        } else {
+            this.u1(opcode);
+            this.u1(index);
+        }
+
+        this.adjustStack(stackEffect);
+    }
+
+    void sipush(int value) {
+        if (value > Short.MAX_VALUE) {
+            throw new UnsupportedOperationException("Index too large for sipush");
+        }
+
+        this.op(SIPUSH, 1, value);
+    }
+
+    Label label() {
+        var label = new Label();
+        this.labels.add(label);
+
+        return label;
+    }
+
+    void mark(Label label) {
+        label.position = this.length;
+    }
+
+    /**
+     * Only used for code where the stack depth after the jump is the same
+     * as it is at the target, which holds for the structured code the
+     * compiler emits.
+     */
+    void jump(int opcode, int stackEffect, Label target) {
+        target.jumps.add(new int[] { this.length, this.length + 1 });
+        this.u1(opcode);
+        this.u2(0);
+        this.adjustStack(stackEffect);
+    }
+
+    int stack() {
+        return this.stack;
+    }
+
+    void stack(int depth) {
+        this.stack = depth;
+    }
+
+    private void adjustStack(int effect) {
+        this.stack += effect;
+        this.maxStack = Math.max(this.maxStack, this.stack);
+    }
+
+    private void u1(int value) {
+        if (this.length == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.length * 2);
+        }
+
+        this.code[this.length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        this.u1(value >>> 8);
+        this.u1(value);
+    }
+
+    byte[] toClass(String internalName, String method, String descriptor) {
+        if (this.length > MAX_CODE) {
+            throw new UnsupportedOperationException("Program too large for a single method");
+        }
+
+        for (Label label : this.labels) {
+            for (int[] jump : label.jumps) {
+                int offset = label.position - jump[0];
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    throw new UnsupportedOperationException("Jump too far for a class file");
+                }
+
+                this.code[jump[1]] = (byte) (offset >>> 8);
+                this.code[jump[1] + 1] = (byte) offset;
+            }
+        }
+
+        int thisClass = this.classRef(internalName);
+        int superClass = this.classRef("java/lang/Object");
+        int methodName = this.utf8(method);
+        int methodDescriptor = this.utf8(descriptor);
+        int codeAttribute = this.utf8("Code");
+
+        var bytes = new ByteArrayOutputStream(this.poolBytes.size() + this.length + 64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(this.poolCount);
+            this.poolBytes.writeTo(out);
+            out.writeShort(0x1010); // ACC_SYNTHETIC | ACC_FINAL
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+            out.writeShort(0x0009); // ACC_PUBLIC | ACC_STATIC
+            out.writeShort(methodName);
+            out.writeShort(methodDescriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + this.length);
+            out.writeShort(this.maxStack);
+            out.writeShort(this.maxLocals);
+            out.writeInt(this.length);
+            out.write(this.code, 0, this.length);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+            out.writeShort(0); // class attributes
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+}
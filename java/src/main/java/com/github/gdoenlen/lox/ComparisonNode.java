@@ -0,0 +1,110 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * {@code == != < <= > >=}. Specializes like {@link ArithmeticNode}: {@link Doubles}
+ * compares unboxed numbers and answers {@link #executeTruthy(NodeFrame)} without
+ * going through a {@link Boolean}, anything else ends up {@link Generic}.
+ */
+abstract class ComparisonNode extends BinaryNode {
+    private ComparisonNode(TokenType type, ExprNode left, ExprNode right) {
+        super(type, left, right);
+    }
+
+    static ComparisonNode create(TokenType type, ExprNode left, ExprNode right) {
+        return new Uninitialized(type, left, right);
+    }
+
+    static boolean generic(TokenType type, Object left, Object right) {
+        return switch (type) {
+            case BANG_EQUAL -> !Operators.isEqual(left, right);
+            case EQUAL_EQUAL -> Operators.isEqual(left, right);
+            case GREATER -> (Double) left > (Double) right;
+            case GREATER_EQUAL -> (Double) left >= (Double) right;
+            case LESS -> (Double) left < (Double) right;
+            case LESS_EQUAL -> (Double) left <= (Double) right;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    /**
+     * Equality compares bits so it agrees with {@link Double#equals(Object)}
+     * on {@code NaN} and {@code -0.0}.
+     */
+    static boolean apply(TokenType type, double left, double right) {
+        return switch (type) {
+            case BANG_EQUAL -> Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+            case EQUAL_EQUAL -> Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    @Override
+    final Object execute(NodeFrame frame) {
+        return this.executeTruthy(frame);
+    }
+
+    private static final class Uninitialized extends ComparisonNode {
+        Uninitialized(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        boolean executeTruthy(NodeFrame frame) {
+            Object l = this.left.execute(frame);
+            Object r = this.right.execute(frame);
+            if (l instanceof Double && r instanceof Double) {
+                this.replace(new Doubles(this.type, this.left, this.right));
+            } else {
+                this.replace(new Generic(this.type, this.left, this.right));
+            }
+
+            return generic(this.type, l, r);
+        }
+    }
+
+    private static final class Doubles extends ComparisonNode {
+        Doubles(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        boolean executeTruthy(NodeFrame frame) {
+            double l;
+            try {
+                l = this.left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return this.deoptimize(ex.result(), this.right.execute(frame));
+            }
+
+            double r;
+            try {
+                r = this.right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return this.deoptimize(l, ex.result());
+            }
+
+            return apply(this.type, l, r);
+        }
+
+        private boolean deoptimize(Object l, Object r) {
+            this.replace(new Generic(this.type, this.left, this.right));
+
+            return generic(this.type, l, r);
+        }
+    }
+
+    private static final class Generic extends ComparisonNode {
+        Generic(TokenType type, ExprNode left, ExprNode right) {
+            super(type, left, right);
+        }
+
+        @Override
+        boolean executeTruthy(NodeFrame frame) {
+            return generic(this.type, this.left.execute(frame), this.right.execute(frame));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.gdoenlen.lox;
+
+import static com.github.gdoenlen.lox.Operators.isTruthy;
+
+final class ConstantNode extends ExprNode {
+    private final Object value;
+    private final boolean truthy;
+
+    ConstantNode(Object value) {
+        this.value = value;
+        this.truthy = isTruthy(value);
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        return this.value;
+    }
+
+    @Override
+    double executeDouble(NodeFrame frame) throws UnexpectedResultException {
+        if (this.value instanceof Double d) {
+            return d;
+        }
+
+        throw new UnexpectedResultException(this.value);
+    }
+
+    @Override
+    boolean executeTruthy(NodeFrame frame) {
+        return this.truthy;
+    }
+
+    @Override
+    void executeVoid(NodeFrame frame) {
+        // nothing to do
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.gdoenlen.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * The {@link InterpreterMXBean} counters, emitted every second by {@link Monitoring}.
+ */
+@Name("com.github.gdoenlen.lox.Counters")
+@Label("Interpreter Counters")
+@Category("Lox")
+@Description("Running totals of the tree interpreter")
+@Period("1 s")
+final class CountersEvent extends jdk.jfr.Event {
+    @Label("Statements Executed")
+    long statementsExecuted;
+
+    @Label("Environments Created")
+    long environmentsCreated;
+
+    @Label("Variable Lookups")
+    long variableLookups;
+
+    @Label("String Concatenations")
+    long stringConcatenations;
+}
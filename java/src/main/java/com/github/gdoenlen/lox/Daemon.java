@@ -0,0 +1,236 @@
+package com.github.gdoenlen.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+/**
+ * {@code lox daemon [--socket=path]} keeps a JVM, warmed up and JIT compiled,
+ * listening on a Unix domain socket, {@link DaemonClient} runs scripts in it
+ * without starting one of its own.
+ *
+ * A request is {@link #MAGIC}, {@link #VERSION}, the client's arguments and,
+ * when there's no script among them, the client's stdin as the program.
+ * Scripts are read by the daemon, the client sends their absolute path. The
+ * response is a sequence of frames, a type and a length prefixed payload,
+ * {@link #STDOUT} and {@link #STDERR} as the program writes them and a last
+ * {@link #EXIT} with the exit status, the same as {@code lox script} would
+ * have exited with.
+ *
+ * Every connection is served on its own virtual thread, compiled and run
+ * with {@link Lox} so they share nothing. The socket is only accessible to
+ * the user running the daemon, who can read every script it's asked to,
+ * and is in a directory only they can write to, see
+ * {@link DaemonClient#checkPrivate(Path)}, which the client checks too.
+ */
+@SuppressWarnings("java:S106") // s.out
+final class Daemon {
+    static final int MAGIC = 0x4C4F5844; // LOXD
+    static final int VERSION = 1;
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 3;
+    static final int USAGE = 64;
+
+    private Daemon() {}
+
+    /**
+     * Serves until the process is killed.
+     *
+     * @throws IllegalArgumentException on bad arguments
+     */
+    static void main(String[] args) {
+        Path socket = DaemonClient.defaultSocket();
+        for (String arg : args) {
+            if (arg.startsWith("--socket=")) {
+                socket = Path.of(arg.substring("--socket=".length()));
+            } else {
+                throw new IllegalArgumentException(arg);
+            }
+        }
+
+        var address = UnixDomainSocketAddress.of(socket);
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Path directory = socket.toAbsolutePath().getParent();
+            if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                // if someone else makes it first it's theirs, and refused below
+                Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+
+            try {
+                DaemonClient.checkPrivate(socket);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Not listening on " + socket + ": " + ex.getMessage(), ex);
+            }
+
+            if (Files.exists(socket)) {
+                if (listening(address)) {
+                    throw new IllegalStateException("A daemon is already listening on " + socket);
+                }
+
+                // left behind by one that died
+                Files.delete(socket);
+            }
+
+            server.bind(address);
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            Path bound = socket;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(bound);
+                } catch (IOException ex) {
+                    // nothing left to do about it
+                }
+            }));
+
+            System.err.println("lox daemon listening on " + socket);
+            for (;;) {
+                SocketChannel client = server.accept();
+                Thread.startVirtualThread(() -> serve(client));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean listening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static void serve(SocketChannel channel) {
+        try (channel;
+             var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            int status = run(in, out);
+            synchronized (out) {
+                out.writeByte(EXIT);
+                out.writeInt(status);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // the client went away, nobody's left to tell
+        }
+    }
+
+    private static int run(DataInputStream in, DataOutputStream out) throws IOException {
+        var errors = new Frames(out, STDERR);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            errors.println("Not a lox client of this version");
+
+            return USAGE;
+        }
+
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        String script = null;
+        for (String arg : args) {
+            if (script == null && !arg.startsWith("-")) {
+                script = arg;
+            } else {
+                errors.println("The daemon only runs a script, unsupported argument: " + arg);
+
+                return USAGE;
+            }
+        }
+
+        String source;
+        if (script == null) {
+            source = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+        } else {
+            try {
+                source = Files.readString(Path.of(script));
+            } catch (IOException ex) {
+                errors.println("Can't read " + script + ": " + ex.getMessage());
+
+                return RunAll.NO_INPUT;
+            }
+        }
+
+        LoxProgram program;
+        try {
+            program = Lox.compile(source);
+        } catch (LoxException ex) {
+            report(errors, ex.diagnostics());
+
+            return RunAll.COMPILE_ERROR;
+        }
+
+        try {
+            program.execute(new Frames(out, STDOUT));
+        } catch (LoxException ex) {
+            report(errors, ex.diagnostics());
+
+            return RunAll.RUNTIME_ERROR;
+        } catch (RuntimeException | StackOverflowError ex) {
+            // a bug in the interpreter, or a script too deep for it, only fails that request
+            errors.println(ex.toString());
+
+            return RunAll.RUNTIME_ERROR;
+        }
+
+        return 0;
+    }
+
+    private static void report(Frames errors, List<Diagnostic> diagnostics) throws IOException {
+        for (Diagnostic diagnostic : diagnostics) {
+            errors.println(diagnostic.toString());
+        }
+    }
+
+    /**
+     * What's written to it goes to the client as frames of {@code type}.
+     */
+    private static final class Frames extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        private Frames(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        void println(String line) throws IOException {
+            byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            this.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            synchronized (this.out) {
+                this.out.writeByte(this.type);
+                this.out.writeInt(length);
+                this.out.write(bytes, offset, length);
+                this.out.flush();
+            }
+        }
+    }
+}
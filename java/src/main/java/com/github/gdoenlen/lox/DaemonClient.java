@@ -0,0 +1,181 @@
+package com.github.gdoenlen.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs a script in a {@link Daemon}: {@code lox client [--socket=path]
+ * [script file]}, or with this class as the main class, which skips setting
+ * up the interpreters {@link Main} does and is what makes it quick.
+ *
+ * The script's output and errors are copied to stdout and stderr and the
+ * client exits with its status. Without a script stdin is sent as the
+ * program. When there is no daemon it exits with 69.
+ */
+@SuppressWarnings("java:S106") // s.out
+public final class DaemonClient {
+    static final int UNAVAILABLE = 69;
+
+    private DaemonClient() {}
+
+    /**
+     * {@code lox.sock} in {@code $XDG_RUNTIME_DIR}, which is the user's
+     * alone, or else in {@code lox-$USER} in the temporary directory, a
+     * directory the daemon makes for it that only the user can get into.
+     */
+    static Path defaultSocket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if (runtime != null && !runtime.isEmpty()) {
+            return Path.of(runtime, "lox.sock");
+        }
+
+        // concat rather than +, bootstrapping the string concatenation is a good part of the client's startup
+        String name = "lox-".concat(System.getProperty("user.name"));
+
+        return Path.of(System.getProperty("java.io.tmpdir"), name, "lox.sock");
+    }
+
+    /**
+     * Checks that nobody but the user could have put {@code socket} where it
+     * is, or can swap it for another: the directory it's in is owned by the
+     * user and nobody else can write to it, and so is the socket, if it's
+     * there. Otherwise another user could listen on it, be sent scripts and
+     * answer with output and an exit status of their own.
+     *
+     * @throws IOException if it isn't so, {@link NoSuchFileException} if
+     *                     there's no directory
+     */
+    static void checkPrivate(Path socket) throws IOException {
+        String user = System.getProperty("user.name");
+        Path directory = socket.toAbsolutePath().getParent();
+        var attributes = Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        if (!attributes.isDirectory() || !attributes.owner().getName().equals(user)
+            || permissions.contains(PosixFilePermission.GROUP_WRITE)
+            || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException(directory + " isn't a directory only " + user + " can write to");
+        }
+
+        if (Files.exists(socket, LinkOption.NOFOLLOW_LINKS)
+            && !Files.getOwner(socket, LinkOption.NOFOLLOW_LINKS).getName().equals(user)) {
+            throw new IOException(socket + " isn't owned by " + user);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return the script's exit status
+     */
+    static int run(String[] args) {
+        Path socket = defaultSocket();
+        String script = null;
+        List<String> forwarded = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--socket=")) {
+                socket = Path.of(arg.substring("--socket=".length()));
+            } else if (script == null && !arg.startsWith("-")) {
+                // the daemon doesn't share our working directory
+                script = Path.of(arg).toAbsolutePath().toString();
+                forwarded.add(script);
+            } else {
+                forwarded.add(arg);
+            }
+        }
+
+        try {
+            checkPrivate(socket);
+        } catch (NoSuchFileException ex) {
+            // connecting says there's no daemon
+        } catch (IOException ex) {
+            System.err.println("Not connecting to " + socket + ": " + ex.getMessage());
+
+            return UNAVAILABLE;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException ex) {
+            System.err.println("No lox daemon on " + socket + ", start one with lox daemon: " + ex.getMessage());
+
+            return UNAVAILABLE;
+        }
+
+        try (channel;
+             var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(Daemon.MAGIC);
+            out.writeInt(Daemon.VERSION);
+            out.writeInt(forwarded.size());
+            for (String arg : forwarded) {
+                out.writeUTF(arg);
+            }
+
+            if (script == null) {
+                byte[] program = System.in.readAllBytes();
+                out.writeInt(program.length);
+                out.write(program);
+            }
+
+            out.flush();
+
+            return copy(in);
+        } catch (EOFException ex) {
+            System.err.println("The lox daemon went away");
+
+            return UNAVAILABLE;
+        } catch (IOException ex) {
+            System.err.println("Lost the lox daemon: " + ex.getMessage());
+
+            return UNAVAILABLE;
+        }
+    }
+
+    private static int copy(DataInputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        for (;;) {
+            byte type = in.readByte();
+            if (type == Daemon.EXIT) {
+                System.out.flush();
+
+                return in.readInt();
+            }
+
+            PrintStream stream = type == Daemon.STDERR ? System.err : System.out;
+            int length = in.readInt();
+            while (length > 0) {
+                int read = in.read(buffer, 0, Math.min(length, buffer.length));
+                if (read < 0) {
+                    throw new EOFException();
+                }
+
+                stream.write(buffer, 0, read);
+                length -= read;
+            }
+
+            stream.flush();
+        }
+    }
+}
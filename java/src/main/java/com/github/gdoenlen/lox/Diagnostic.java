@@ -0,0 +1,15 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * An error found compiling or running a program.
+ *
+ * @param line where in the source, -1 if it isn't known
+ */
+public record Diagnostic(int line, String message) {
+    @Override
+    public String toString() {
+        return this.line < 0
+            ? "Error: " + this.message
+            : "[line " + this.line + "] Error: " + this.message;
+    }
+}
@@ -1,53 +1,83 @@
 package com.github.gdoenlen.lox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
-// TODO: this should probably be an interface
-// so we don't have to pay the cost of the conditional
-// on every action. most environments are not going to
-// have an enclosing scope.
+/**
+ * The global scope. Locals are resolved to {@link Frame} slots ahead of time,
+ * globals can't be as the REPL keeps defining them line by line, instead
+ * they're indexed by their {@link Token#symbol()}, the ids of the program's
+ * own {@link Symbols}, so they take as much room as the names it defines.
+ *
+ * Values are kept as {@link Value}s, with what a reference is to in
+ * {@code references}. The other backends get and set them as objects,
+ * those they set are kept there too, and a number the tree interpreter set
+ * is boxed there the first time they get it, so neither boxes on every read.
+ */
 class Environment {
-    private final Map<String, Object> values = new HashMap<>();
-    private final Environment enclosing;
+    private long[] values = new long[0];
+    private Object[] references = new Object[0];
 
-    Environment() {
-        this.enclosing = null;
+    void define(Token token, Object value) {
+        this.define(token, Value.of(value), value);
     }
 
-    Environment(Environment enclosing) {
-        this.enclosing = enclosing;
-    }
+    /**
+     * @param reference what {@code value} is a reference to, {@code null} if it isn't one
+     */
+    void define(Token token, long value, Object reference) {
+        int symbol = token.symbol();
+        if (symbol >= this.values.length) {
+            int length = this.values.length;
+            int size = Math.max(symbol + 1, length * 2);
+            this.values = Arrays.copyOf(this.values, size);
+            this.references = Arrays.copyOf(this.references, size);
+            Arrays.fill(this.values, length, size, Value.UNDEFINED);
+        }
 
-    void define(String name, Object value) {
-        this.values.put(name, value);
+        this.values[symbol] = value;
+        this.references[symbol] = reference;
     }
 
     void assign(Token token, Object value) {
-        if (this.values.containsKey(token.lexeme())) {
-            this.values.put(token.lexeme(), value);
+        this.assign(token, Value.of(value), value);
+    }
 
-            return;
+    void assign(Token token, long value, Object reference) {
+        int symbol = token.symbol();
+        if (symbol >= this.values.length || this.values[symbol] == Value.UNDEFINED) {
+            throw new UndefinedVariableException(token);
         }
 
-        if (this.enclosing != null) {
-            this.enclosing.assign(token, value);
+        this.values[symbol] = value;
+        this.references[symbol] = reference;
+    }
 
-            return;
+    Object get(Token token) {
+        long value = this.value(token);
+        int symbol = token.symbol();
+        Object reference = this.references[symbol];
+        if (reference == null && value != Value.NIL) {
+            reference = Value.toObject(value, null);
+            this.references[symbol] = reference;
         }
 
-        throw new UndefinedVariableException(token);
+        return reference;
     }
 
-    Object get(Token token) {
-        if (this.values.containsKey(token.lexeme())) {
-            return this.values.get(token.lexeme());
+    long value(Token token) {
+        int symbol = token.symbol();
+        long value = symbol < this.values.length ? this.values[symbol] : Value.UNDEFINED;
+        if (value == Value.UNDEFINED) {
+            throw new UndefinedVariableException(token);
         }
 
-        if (this.enclosing != null) {
-            return this.enclosing.get(token);
-        }
+        return value;
+    }
 
-        throw new UndefinedVariableException(token);
+    /**
+     * What the reference {@link #value(Token)} returned is to.
+     */
+    Object reference(Token token) {
+        return this.references[token.symbol()];
     }
 }
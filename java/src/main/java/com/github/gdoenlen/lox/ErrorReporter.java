@@ -0,0 +1,11 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Where the {@link Lexer}, {@link Parser} and {@link Resolver} report the
+ * errors they find. On the command line that's {@link Main#error(int, String)},
+ * embedded every compilation collects its own, see {@link Lox}.
+ */
+@FunctionalInterface
+interface ErrorReporter {
+    void error(int line, String message);
+}
@@ -0,0 +1,39 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Executing a whole program, compiling included, begins when created. Only
+ * create it when {@link Monitoring#recording()}, loading the class starts up JFR.
+ */
+@Name("com.github.gdoenlen.lox.Execute")
+@Label("Execute")
+@Category("Lox")
+@Description("Running resolved statements on a backend")
+final class ExecuteEvent extends jdk.jfr.Event {
+    @Label("Source")
+    String source;
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Statements")
+    @Description("Top level statements")
+    int statements;
+
+    ExecuteEvent() {
+        this.begin();
+    }
+
+    void commit(String source, Backend backend, int statements) {
+        this.source = source;
+        this.backend = backend.name().toLowerCase(Locale.ROOT);
+        this.statements = statements;
+        this.commit();
+    }
+}
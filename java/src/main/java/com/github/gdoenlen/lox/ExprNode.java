@@ -0,0 +1,32 @@
+package com.github.gdoenlen.lox;
+
+import static com.github.gdoenlen.lox.Operators.isTruthy;
+
+/**
+ * An executable expression. Subclasses override the typed {@code execute*}
+ * methods they can answer without boxing, the defaults fall back to
+ * {@link #execute(NodeFrame)}.
+ */
+abstract class ExprNode extends Node {
+    abstract Object execute(NodeFrame frame);
+
+    double executeDouble(NodeFrame frame) throws UnexpectedResultException {
+        Object value = this.execute(frame);
+        if (value instanceof Double d) {
+            return d;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+
+    boolean executeTruthy(NodeFrame frame) {
+        return isTruthy(this.execute(frame));
+    }
+
+    /**
+     * Executes for side effects only, nodes that would box their result override this.
+     */
+    void executeVoid(NodeFrame frame) {
+        this.execute(frame);
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.gdoenlen.lox;
+
+final class ExpressionNode extends StatementNode {
+    private ExprNode expr;
+
+    ExpressionNode(ExprNode expr) {
+        this.expr = this.adopt(expr);
+    }
+
+    @Override
+    void execute(NodeFrame frame) {
+        this.expr.executeVoid(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.expr == oldChild) {
+            this.expr = (ExprNode) newChild;
+        }
+    }
+}
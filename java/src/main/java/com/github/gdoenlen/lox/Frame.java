@@ -0,0 +1,55 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Storage for the locals of a single block. Variables are addressed
+ * by the (depth, slot) pair computed by the {@link Resolver} so a
+ * lookup is a walk of {@code depth} parents and an array load.
+ *
+ * Values are {@link Value}s, a string is a reference with the string in
+ * the same slot of {@code references}.
+ */
+final class Frame {
+    private final long[] slots;
+    private final Object[] references;
+    private final Frame enclosing;
+
+    Frame(int size, Frame enclosing) {
+        this.slots = new long[size];
+        this.references = new Object[size];
+        this.enclosing = enclosing;
+    }
+
+    long get(int depth, int slot) {
+        return this.ancestor(depth).slots[slot];
+    }
+
+    /**
+     * What the reference in the slot is to.
+     */
+    Object reference(int depth, int slot) {
+        return this.ancestor(depth).references[slot];
+    }
+
+    /**
+     * @param reference what {@code value} is a reference to, {@code null} if it isn't one
+     */
+    void set(int depth, int slot, long value, Object reference) {
+        Frame frame = this.ancestor(depth);
+        frame.slots[slot] = value;
+        frame.references[slot] = reference;
+    }
+
+    void define(int slot, long value, Object reference) {
+        this.slots[slot] = value;
+        this.references[slot] = reference;
+    }
+
+    private Frame ancestor(int depth) {
+        Frame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.enclosing;
+        }
+
+        return frame;
+    }
+}
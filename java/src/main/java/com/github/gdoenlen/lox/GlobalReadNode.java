@@ -0,0 +1,16 @@
+package com.github.gdoenlen.lox;
+
+final class GlobalReadNode extends ExprNode {
+    private final Environment globals;
+    private final Token token;
+
+    GlobalReadNode(Environment globals, Token token) {
+        this.globals = globals;
+        this.token = token;
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        return this.globals.get(this.token);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Assigns a global, or defines it when built from a top level {@link Var}.
+ */
+final class GlobalWriteNode extends ExprNode {
+    private final Environment globals;
+    private final Token token;
+    private final boolean define;
+    private ExprNode value;
+
+    GlobalWriteNode(Environment globals, Token token, ExprNode value, boolean define) {
+        this.globals = globals;
+        this.token = token;
+        this.value = this.adopt(value);
+        this.define = define;
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        Object result = this.value.execute(frame);
+        if (this.define) {
+            this.globals.define(this.token, result);
+        } else {
+            this.globals.assign(this.token, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.value == oldChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+}
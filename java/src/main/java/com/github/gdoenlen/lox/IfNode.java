@@ -0,0 +1,29 @@
+package com.github.gdoenlen.lox;
+
+final class IfNode extends StatementNode {
+    private ExprNode condition;
+    private final StatementNode thenBranch;
+    private final StatementNode elseBranch;
+
+    IfNode(ExprNode condition, StatementNode thenBranch, StatementNode elseBranch) {
+        this.condition = this.adopt(condition);
+        this.thenBranch = this.adopt(thenBranch);
+        this.elseBranch = elseBranch == null ? null : this.adopt(elseBranch);
+    }
+
+    @Override
+    void execute(NodeFrame frame) {
+        if (this.condition.executeTruthy(frame)) {
+            this.thenBranch.execute(frame);
+        } else if (this.elseBranch != null) {
+            this.elseBranch.execute(frame);
+        }
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.condition == oldChild) {
+            this.condition = (ExprNode) newChild;
+        }
+    }
+}
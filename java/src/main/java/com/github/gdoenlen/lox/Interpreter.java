@@ -1,105 +1,304 @@
 package com.github.gdoenlen.lox;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.Iterator;
 
-class Interpreter {
-    private Environment environment = new Environment();
+/**
+ * Walks the resolved statement tree. It keeps the running totals of
+ * {@link InterpreterMXBean}, plain fields bumped as it goes.
+ *
+ * Expressions evaluate to {@link Value}s, numbers are never boxed. The
+ * strings a statement works with are kept in {@code references}, which is
+ * cleared when the next statement starts: a statement's values are done
+ * with by then, those it stored in a variable are referenced from there.
+ */
+class Interpreter implements InterpreterMXBean {
+    /**
+     * How deep statements and the expressions in them are interpreted
+     * recursively, well within the default thread stack.
+     */
+    static final int MAX_DEPTH = 256;
 
+    private final Environment globals;
+    private final OutputSink out;
+    private Frame frame = null;
+    private long statementsExecuted = 0;
+    private long environmentsCreated = 0;
+    private long variableLookups = 0;
+    private long stringConcatenations = 0;
+    private int depth = 0;
+    private Object[] references = new Object[16];
+    private int referenceCount = 0;
+
+    Interpreter() {
+        this(new Environment(), OutputSink.stdout());
+    }
+
+    Interpreter(Environment globals, OutputSink out) {
+        this.globals = globals;
+        this.out = out;
+    }
+
+    /**
+     * Evaluates {@code expr} recursively, down to {@link #MAX_DEPTH}
+     * expressions deep, anything deeper with {@link #evaluate(Expr)}.
+     */
     @SuppressWarnings("unused")
-    private Object interpret(Expr expr) {
-        return switch (expr) {
-            case Assign assign -> {
-                Object value = this.interpret(assign.value());
-                this.environment.assign(assign.token(), value);
+    long interpret(Expr expr) {
+        if (this.depth == MAX_DEPTH) {
+            return this.evaluate(expr);
+        }
 
-                yield value;
-            }
-            case Binary b -> this.binary(b);
-            case Grouping g -> this.interpret(g.expr());
-            case Literal l -> l.value();
-            case Logical l -> {
-                Object left = this.interpret(l.left());
-                if (l.isOr() && isTruthy(left)) {
-                    yield left;
+        this.depth++;
+        try {
+            return switch (expr) {
+                case Assign assign -> this.assign(assign, this.interpret(assign.value()));
+                case Binary b -> {
+                    long left = this.interpret(b.left());
+
+                    yield this.binary(b.operator(), left, this.interpret(b.right()));
                 }
+                case Grouping g -> this.interpret(g.expr());
+                case Literal l -> this.literal(l);
+                case Logical l -> {
+                    long left = this.interpret(l.left());
 
-                if (l.isAnd() && !isTruthy(left)) {
-                    yield left;
+                    yield this.shortCircuits(l, left) ? left : this.interpret(l.right());
                 }
+                case NullExpr nullExpr -> Value.NIL;
+                case Unary u -> this.unary(u.operator(), this.interpret(u.right()));
+                case Variable variable -> this.variable(variable);
+            };
+        } finally {
+            this.depth--;
+        }
+    }
 
-                yield this.interpret(l.right());
+    /**
+     * Evaluates {@code root} with stacks on the heap, of the expressions
+     * still to evaluate or, once their operands are, to finish, and of the
+     * values of the ones done, instead of recursing, so an expression can
+     * nest as deep as the parser lets it. The recursive
+     * {@link #interpret(Expr)} is quicker and enough for anything written by
+     * hand, this is only for what it can't reach.
+     */
+    @SuppressWarnings("unused")
+    private long evaluate(Expr root) {
+        var pending = new Expr[64];
+        var operandsDone = new boolean[64];
+        var values = new long[64];
+        int top = 0;
+        int count = 0;
+        pending[top++] = root;
+        while (top > 0) {
+            if (top + 2 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+                operandsDone = Arrays.copyOf(operandsDone, pending.length);
             }
-            case NullExpr nullExpr -> null;
-            case Unary u -> this.unary(u);
-            case Variable variable -> this.environment.get(variable.token());
-        };
+
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+
+            Expr expr = pending[top - 1];
+            if (operandsDone[top - 1]) {
+                operandsDone[--top] = false;
+                switch (expr) {
+                    case Assign a -> this.assign(a, values[count - 1]);
+                    case Binary b -> {
+                        long right = values[--count];
+                        values[count - 1] = this.binary(b.operator(), values[count - 1], right);
+                    }
+                    case Logical l -> {
+                        // the right replaces the left, if it's needed
+                        if (!this.shortCircuits(l, values[count - 1])) {
+                            count--;
+                            pending[top++] = l.right();
+                        }
+                    }
+                    case Unary u -> values[count - 1] = this.unary(u.operator(), values[count - 1]);
+                    default -> throw new IllegalStateException(expr.toString());
+                }
+
+                continue;
+            }
+
+            switch (expr) {
+                case Assign a -> {
+                    operandsDone[top - 1] = true;
+                    pending[top++] = a.value();
+                }
+                case Binary b -> {
+                    operandsDone[top - 1] = true;
+                    pending[top++] = b.right();
+                    pending[top++] = b.left();
+                }
+                case Grouping g -> pending[top - 1] = g.expr();
+                case Literal l -> {
+                    top--;
+                    values[count++] = this.literal(l);
+                }
+                case Logical l -> {
+                    operandsDone[top - 1] = true;
+                    pending[top++] = l.left();
+                }
+                case NullExpr nullExpr -> {
+                    top--;
+                    values[count++] = Value.NIL;
+                }
+                case Unary u -> {
+                    operandsDone[top - 1] = true;
+                    pending[top++] = u.right();
+                }
+                case Variable variable -> {
+                    top--;
+                    values[count++] = this.variable(variable);
+                }
+            }
+        }
+
+        return values[0];
+    }
+
+    private long literal(Literal l) {
+        Object value = l.value();
+        long literal = Value.of(value);
+
+        return Value.isReference(literal) ? this.reference(value) : literal;
+    }
+
+    private long assign(Assign assign, long value) {
+        Object reference = Value.isReference(value) ? this.referenced(value) : null;
+        if (assign.isGlobal()) {
+            this.globals.assign(assign.token(), value, reference);
+        } else {
+            this.frame.set(assign.depth(), assign.slot(), value, reference);
+        }
+
+        return value;
+    }
+
+    private long variable(Variable variable) {
+        this.variableLookups++;
+        if (variable.isGlobal()) {
+            long value = this.globals.value(variable.token());
+
+            return Value.isReference(value) ? this.reference(this.globals.reference(variable.token())) : value;
+        }
+
+        long value = this.frame.get(variable.depth(), variable.slot());
+
+        return Value.isReference(value) ? this.reference(this.frame.reference(variable.depth(), variable.slot())) : value;
+    }
+
+    /**
+     * If {@code left} is the value of {@code l} without evaluating its right.
+     */
+    private boolean shortCircuits(Logical l, long left) {
+        return l.isOr() ? Value.isTruthy(left) : l.isAnd() && !Value.isTruthy(left);
     }
 
     // TODO can we find a way to exhaust the switches on type?
-    private Object unary(Unary u) {
-        TokenType type = u.tokenType();
-        Object right = this.interpret(u.right());
-
-        return switch (type) {
-            case BANG -> !isTruthy(right);
-            case MINUS -> -(double) right;
-            default -> throw new IllegalArgumentException(type.toString());
+    private long unary(Token operator, long right) {
+        return switch (operator.tokenType()) {
+            case BANG -> Value.bool(!Value.isTruthy(right));
+            case MINUS -> {
+                if (!Value.isNumber(right)) {
+                    throw new OperandTypeException(operator, "Operand must be a number.");
+                }
+
+                yield Value.number(-Value.asNumber(right));
+            }
+            default -> throw new IllegalArgumentException(operator.tokenType().toString());
         };
     }
 
-    private static boolean isTruthy(Object o) {
-        if (o instanceof Boolean b) {
-            return b;
-        }
+    private long binary(Token operator, long left, long right) {
+        return switch (operator.tokenType()) {
+            case BANG_EQUAL -> Value.bool(!this.isEqual(left, right));
+            case EQUAL_EQUAL -> Value.bool(this.isEqual(left, right));
+            case GREATER -> Value.bool(number(operator, left) > number(operator, right));
+            case GREATER_EQUAL -> Value.bool(number(operator, left) >= number(operator, right));
+            case LESS -> Value.bool(number(operator, left) < number(operator, right));
+            case LESS_EQUAL -> Value.bool(number(operator, left) <= number(operator, right));
+            case MINUS -> Value.number(number(operator, left) - number(operator, right));
+            case PLUS -> {
+                if (Value.isNumber(left) && Value.isNumber(right)) {
+                    yield Value.number(Value.asNumber(left) + Value.asNumber(right));
+                }
 
-        return o != null;
-    }
-
-    private Object binary(Binary b) {
-        TokenType type = b.tokenType();
-        Object left = this.interpret(b.left());
-        Object right = this.interpret(b.right());
-
-        return switch (type) {
-            case BANG_EQUAL -> !Objects.equals(left, right);
-            case EQUAL_EQUAL -> Objects.equals(left, right);
-            case GREATER -> (Double) left > (Double) right;
-            case GREATER_EQUAL -> (Double) left >= (Double) right;
-            case LESS -> (Double) left < (Double) right;
-            case LESS_EQUAL -> (Double) left <= (Double) right;
-            case MINUS -> (Double) left - (Double) right;
-            case PLUS -> plus(left, right);
-            case SLASH -> (Double) left / (Double) right;
-            case STAR -> (Double) left * (Double) right;
-            default -> throw new IllegalArgumentException(type.toString());
+                Object sum = Operators.plus(operator, this.toObject(left), this.toObject(right));
+                this.stringConcatenations++;
+
+                yield this.reference(sum);
+            }
+            case SLASH -> Value.number(number(operator, left) / number(operator, right));
+            case STAR -> Value.number(number(operator, left) * number(operator, right));
+            default -> throw new IllegalArgumentException(operator.tokenType().toString());
         };
     }
 
-    private static Object plus(Object left, Object right) {
-        if (left instanceof String l) {
-            return l + right;
+    /**
+     * @throws OperandTypeException if {@code value} isn't a number
+     */
+    private static double number(Token operator, long value) {
+        if (!Value.isNumber(value)) {
+            throw new OperandTypeException(operator, "Operands must be numbers.");
         }
 
-        if (right instanceof String r) {
-            return r + left;
+        return Value.asNumber(value);
+    }
+
+    /**
+     * {@link Operators#isEqual(Object, Object)} of the values, the bits of
+     * two numbers are equal exactly when their {@link Double}s are.
+     */
+    private boolean isEqual(long left, long right) {
+        if (Value.isReference(left) || Value.isReference(right)) {
+            return Value.isReference(left) && Value.isReference(right)
+                && Operators.isEqual(this.referenced(left), this.referenced(right));
         }
 
-        if (left instanceof Double l && right instanceof Double r) {
-            return l + r;
+        return left == right;
+    }
+
+    /**
+     * Keeps {@code o} in the references of the statement being run.
+     *
+     * @return a reference to it
+     */
+    private long reference(Object o) {
+        if (this.referenceCount == this.references.length) {
+            this.references = Arrays.copyOf(this.references, this.referenceCount * 2);
         }
 
-        throw new IllegalArgumentException(
-            String.format(
-                "Tried to add or concatenate non-string or non-double classes: %s, %s",
-                left.getClass(),
-                right.getClass()
-            )
-        );
+        this.references[this.referenceCount] = o;
+
+        return Value.reference(this.referenceCount++);
+    }
+
+    /**
+     * Drops the references of the last statement, what it stored has its own.
+     */
+    private void clearReferences() {
+        Arrays.fill(this.references, 0, this.referenceCount, null);
+        this.referenceCount = 0;
+    }
+
+    private Object referenced(long reference) {
+        return this.references[Value.index(reference)];
+    }
+
+    private Object toObject(long value) {
+        return Value.isReference(value) ? this.referenced(value) : Value.toObject(value, null);
     }
 
+    /**
+     * Runs {@code statement} recursively, down to {@link #MAX_DEPTH}
+     * statements and expressions deep, anything deeper with
+     * {@link #execute(Statement)}.
+     */
     @SuppressWarnings({
-        // s.out
-        "java:S106",
         // switch default, false positive
         "java:S131",
         // empty case block
@@ -107,32 +306,186 @@ class Interpreter {
         "unused"
     })
     void interpret(Statement statement) {
-        switch (statement) {
-            case Expression e -> this.interpret(e.expr());
-            case Print p -> System.out.println(Objects.toString(this.interpret(p.value()), "nil"));
-            case Var v -> this.environment.define(v.token().lexeme(), this.interpret(v.initializer()));
-            case Block b -> {
-                var previousEnv = this.environment;
-                try {
-                    this.environment = new Environment(previousEnv);
-                    b.statements().forEach(this::interpret);
-                } finally {
-                    this.environment = previousEnv;
+        if (this.depth == MAX_DEPTH) {
+            this.execute(statement);
+
+            return;
+        }
+
+        this.depth++;
+        this.statementsExecuted++;
+        this.clearReferences();
+        try {
+            switch (statement) {
+                case Expression e -> this.interpret(e.expr());
+                case Print p -> this.print(this.interpret(p.value()));
+                case Var v -> this.define(v, this.interpret(v.initializer()));
+                case Block b -> {
+                    if (b.flattened()) {
+                        for (Statement child : b.statements()) {
+                            this.interpret(child);
+                        }
+
+                        return;
+                    }
+
+                    var previous = this.frame;
+                    try {
+                        this.frame = this.enter(b);
+                        for (Statement child : b.statements()) {
+                            this.interpret(child);
+                        }
+                    } finally {
+                        this.frame = previous;
+                    }
                 }
-            }
-            case Conditional c -> {
-                if (isTruthy(this.interpret(c.condition()))) {
-                    this.interpret(c.thenBranch());
-                } else {
-                    this.interpret(c.elseBranch());
+                case Conditional c -> {
+                    if (Value.isTruthy(this.interpret(c.condition()))) {
+                        this.interpret(c.thenBranch());
+                    } else {
+                        this.interpret(c.elseBranch());
+                    }
+                }
+                case While w -> {
+                    while (Value.isTruthy(this.interpret(w.condition()))) {
+                        this.interpret(w.body());
+                    }
                 }
+                case NullStatement ns -> {}
             }
-            case While w -> {
-                while (isTruthy(this.interpret(w.condition()))) {
-                    this.interpret(w.body());
+        } finally {
+            this.depth--;
+        }
+    }
+
+    /**
+     * Runs {@code root} with stacks on the heap, of the statements running
+     * and, for a block, of the statements left in it and the frame to go
+     * back to after it, instead of recursing, like {@link #evaluate(Expr)}
+     * does expressions, so statements can nest as deep as the parser lets
+     * them. A conditional is replaced on the stack by its branch, a loop
+     * stays on it for as long as it loops.
+     */
+    @SuppressWarnings("unused")
+    private void execute(Statement root) {
+        var running = new Statement[64];
+        var started = new boolean[64];
+        var children = new Iterator<?>[64];
+        var frames = new Frame[64];
+        int top = 0;
+        var previous = this.frame;
+        running[top++] = root;
+        try {
+            while (top > 0) {
+                if (top == running.length) {
+                    running = Arrays.copyOf(running, top * 2);
+                    started = Arrays.copyOf(started, top * 2);
+                    children = Arrays.copyOf(children, top * 2);
+                    frames = Arrays.copyOf(frames, top * 2);
+                }
+
+                Statement statement = running[top - 1];
+                if (!started[top - 1]) {
+                    this.statementsExecuted++;
+                    this.clearReferences();
+                    switch (statement) {
+                        case Block b -> {
+                            started[top - 1] = true;
+                            children[top - 1] = b.statements().iterator();
+                            frames[top - 1] = this.frame;
+                            if (!b.flattened()) {
+                                this.frame = this.enter(b);
+                            }
+                        }
+                        case Conditional c -> running[top - 1] = Value.isTruthy(this.interpret(c.condition()))
+                            ? c.thenBranch()
+                            : c.elseBranch();
+                        case While w -> started[top - 1] = true;
+                        case Expression e -> {
+                            top--;
+                            this.interpret(e.expr());
+                        }
+                        case Print p -> {
+                            top--;
+                            this.print(this.interpret(p.value()));
+                        }
+                        case Var v -> {
+                            top--;
+                            this.define(v, this.interpret(v.initializer()));
+                        }
+                        case NullStatement ns -> top--;
+                    }
+
+                    continue;
+                }
+
+                if (statement instanceof While w) {
+                    this.clearReferences();
+                    if (Value.isTruthy(this.interpret(w.condition()))) {
+                        running[top++] = w.body();
+                    } else {
+                        started[--top] = false;
+                    }
+                } else if (children[top - 1].hasNext()) {
+                    Statement child = (Statement) children[top - 1].next();
+                    running[top++] = child;
+                } else {
+                    top--;
+                    this.frame = frames[top];
+                    started[top] = false;
+                    children[top] = null;
+                    frames[top] = null;
                 }
             }
-            case NullStatement ns -> {}
+        } finally {
+            this.frame = previous;
+        }
+    }
+
+    /**
+     * A new frame for the locals of {@code b}.
+     */
+    private Frame enter(Block b) {
+        this.environmentsCreated++;
+
+        return new Frame(b.slots(), this.frame);
+    }
+
+    @SuppressWarnings("java:S106") // s.out
+    private void print(long value) {
+        if (Value.isNumber(value)) {
+            this.out.print(Value.asNumber(value));
+        } else {
+            this.out.print(this.toObject(value));
+        }
+    }
+
+    private void define(Var v, long value) {
+        Object reference = Value.isReference(value) ? this.referenced(value) : null;
+        if (v.isGlobal()) {
+            this.globals.define(v.token(), value, reference);
+        } else {
+            this.frame.define(v.slot(), value, reference);
         }
     }
+
+    @Override
+    public long getStatementsExecuted() {
+        return this.statementsExecuted;
+    }
+
+    @Override
+    public long getEnvironmentsCreated() {
+        return this.environmentsCreated;
+    }
+
+    @Override
+    public long getVariableLookups() {
+        return this.variableLookups;
+    }
+
+    @Override
+    public long getStringConcatenations() {
+        return this.stringConcatenations;
+    }
 }
@@ -0,0 +1,19 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Running totals of the tree {@link Interpreter}, registered by
+ * {@link Monitoring} as {@value Monitoring#OBJECT_NAME}. They are plain
+ * counters read without synchronization, so they can lag a little
+ * behind the interpreter.
+ */
+public interface InterpreterMXBean {
+    long getStatementsExecuted();
+
+    /** Block scopes entered. */
+    long getEnvironmentsCreated();
+
+    /** Reads of local and global variables. */
+    long getVariableLookups();
+
+    long getStringConcatenations();
+}
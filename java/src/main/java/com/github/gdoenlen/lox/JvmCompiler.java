@@ -0,0 +1,532 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.gdoenlen.lox.ClassFileWriter.*;
+
+/**
+ * Compiles resolved statements into a class with a single
+ * {@code static void run(Environment, Token[], OutputSink)} method.
+ *
+ * Every local declaration gets its own JVM local. Locals whose every
+ * assignment is statically a number are kept in {@code double} locals,
+ * arithmetic and comparisons on such values never box. Globals go through
+ * the {@link Environment} passed in, {@code Token[]} holds the tokens
+ * used to name them. {@code print} writes to the {@link OutputSink}.
+ *
+ * @throws UnsupportedOperationException from {@link #compile(Collection)}
+ *   when the program doesn't fit in a class file
+ */
+class JvmCompiler {
+    /** Not {@link LoxProgram}, which is the embedding API and unrelated. */
+    static final String CLASS_NAME = "com/github/gdoenlen/lox/CompiledProgram";
+    static final String DESCRIPTOR =
+        "(Lcom/github/gdoenlen/lox/Environment;[Lcom/github/gdoenlen/lox/Token;Lcom/github/gdoenlen/lox/OutputSink;)V";
+
+    private static final String RUNTIME = "com/github/gdoenlen/lox/JvmRuntime";
+    private static final String OPERATORS = "com/github/gdoenlen/lox/Operators";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String ENVIRONMENT = "com/github/gdoenlen/lox/Environment";
+    private static final String TOKEN = "Lcom/github/gdoenlen/lox/Token;";
+    private static final String OUTPUT = "com/github/gdoenlen/lox/OutputSink";
+    private static final int FIRST_LOCAL = 3;
+
+    private enum Type { DOUBLE, BOOLEAN, OBJECT }
+
+    private static final class Local {
+        private final List<Expr> assignments = new ArrayList<>();
+        private boolean isDouble = true;
+        private int index;
+    }
+
+    private final ClassFileWriter writer = new ClassFileWriter();
+    private final Map<Object, Local> locals = new IdentityHashMap<>();
+    private final List<Local> declared = new ArrayList<>();
+    private final Deque<Local[]> scopes = new ArrayDeque<>();
+    private final Map<Token, Integer> tokens = new HashMap<>();
+
+    /**
+     * The tokens the compiled code expects as its second argument.
+     */
+    Token[] tokens() {
+        var array = new Token[this.tokens.size()];
+        this.tokens.forEach((token, index) -> array[index] = token);
+
+        return array;
+    }
+
+    byte[] compile(Collection<Statement> statements) {
+        statements.forEach(this::declare);
+        this.inferTypes();
+
+        int next = FIRST_LOCAL;
+        for (Local local : this.declared) {
+            local.index = next;
+            next += local.isDouble ? 2 : 1;
+        }
+
+        this.writer.reserveLocals(next);
+        statements.forEach(this::compile);
+        this.writer.op(RETURN, 0);
+
+        return this.writer.toClass(CLASS_NAME, "run", DESCRIPTOR);
+    }
+
+    @SuppressWarnings("unused")
+    private void declare(Statement statement) {
+        switch (statement) {
+            case Block b -> {
+                this.scopes.push(new Local[b.slots()]);
+                b.statements().forEach(this::declare);
+                this.scopes.pop();
+            }
+            case Conditional c -> {
+                this.declare(c.condition());
+                this.declare(c.thenBranch());
+                this.declare(c.elseBranch());
+            }
+            case Expression e -> this.declare(e.expr());
+            case NullStatement ns -> {}
+            case Print p -> this.declare(p.value());
+            case Var v -> {
+                this.declare(v.initializer());
+                if (!v.isGlobal()) {
+                    var local = new Local();
+                    local.assignments.add(v.initializer());
+                    this.scopes.peek()[v.slot()] = local;
+                    this.declared.add(local);
+                    this.locals.put(v, local);
+                }
+            }
+            case While w -> {
+                this.declare(w.condition());
+                this.declare(w.body());
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private void declare(Expr expr) {
+        switch (expr) {
+            case Assign a -> {
+                this.declare(a.value());
+                if (!a.isGlobal()) {
+                    Local local = this.lookup(a.depth(), a.slot());
+                    local.assignments.add(a.value());
+                    this.locals.put(a, local);
+                }
+            }
+            case Binary b -> {
+                this.declare(b.left());
+                this.declare(b.right());
+            }
+            case Grouping g -> this.declare(g.expr());
+            case Literal l -> {}
+            case Logical l -> {
+                this.declare(l.left());
+                this.declare(l.right());
+            }
+            case NullExpr n -> {}
+            case Unary u -> this.declare(u.right());
+            case Variable v -> {
+                if (!v.isGlobal()) {
+                    this.locals.put(v, this.lookup(v.depth(), v.slot()));
+                }
+            }
+        }
+    }
+
+    private Local lookup(int depth, int slot) {
+        var it = this.scopes.iterator();
+        for (int i = 0; i < depth; i++) {
+            it.next();
+        }
+
+        return it.next()[slot];
+    }
+
+    /**
+     * Starts by assuming every local is a number and demotes the ones that
+     * are assigned anything that isn't, until nothing changes.
+     */
+    private void inferTypes() {
+        boolean changed;
+        do {
+            changed = false;
+            for (Local local : this.declared) {
+                if (local.isDouble && local.assignments.stream().anyMatch(e -> this.typeOf(e) != Type.DOUBLE)) {
+                    local.isDouble = false;
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    @SuppressWarnings("unused")
+    private Type typeOf(Expr expr) {
+        return switch (expr) {
+            case Assign a -> a.isGlobal() ? Type.OBJECT : this.typeOf(this.locals.get(a));
+            case Binary b -> switch (b.tokenType()) {
+                case MINUS, SLASH, STAR -> Type.DOUBLE;
+                case PLUS -> this.typeOf(b.left()) == Type.DOUBLE && this.typeOf(b.right()) == Type.DOUBLE
+                    ? Type.DOUBLE
+                    : Type.OBJECT;
+                default -> Type.BOOLEAN;
+            };
+            case Grouping g -> this.typeOf(g.expr());
+            case Literal l -> literalType(l.value());
+            case Logical l -> this.typeOf(l.left()) == Type.BOOLEAN && this.typeOf(l.right()) == Type.BOOLEAN
+                ? Type.BOOLEAN
+                : Type.OBJECT;
+            case NullExpr n -> Type.OBJECT;
+            case Unary u -> u.tokenType() == TokenType.MINUS ? Type.DOUBLE : Type.BOOLEAN;
+            case Variable v -> v.isGlobal() ? Type.OBJECT : this.typeOf(this.locals.get(v));
+        };
+    }
+
+    private static Type literalType(Object literal) {
+        if (literal instanceof Double) {
+            return Type.DOUBLE;
+        }
+
+        return literal instanceof Boolean ? Type.BOOLEAN : Type.OBJECT;
+    }
+
+    private Type typeOf(Local local) {
+        return local.isDouble ? Type.DOUBLE : Type.OBJECT;
+    }
+
+    @SuppressWarnings("unused")
+    private void compile(Statement statement) {
+        switch (statement) {
+            case Block b -> b.statements().forEach(this::compile);
+            case Conditional c -> {
+                Label otherwise = this.writer.label();
+                Label end = this.writer.label();
+                this.compile(c.condition(), Type.BOOLEAN);
+                this.writer.jump(IFEQ, -1, otherwise);
+                this.compile(c.thenBranch());
+                this.writer.jump(GOTO, 0, end);
+                this.writer.mark(otherwise);
+                this.compile(c.elseBranch());
+                this.writer.mark(end);
+            }
+            case Expression e -> this.pop(this.compile(e.expr()));
+            case NullStatement ns -> {}
+            case Print p -> {
+                this.writer.local(ALOAD, 1, 2);
+                this.compile(p.value(), Type.OBJECT);
+                this.invokeVirtual(OUTPUT, "print", "(" + OBJECT + ")V", -2);
+            }
+            case Var v -> {
+                if (v.isGlobal()) {
+                    this.writer.local(ALOAD, 1, 0);
+                    this.token(v.token());
+                    this.compile(v.initializer(), Type.OBJECT);
+                    this.invokeVirtual(ENVIRONMENT, "define", "(" + TOKEN + OBJECT + ")V", -3);
+                } else {
+                    Local local = this.locals.get(v);
+                    this.compile(v.initializer(), this.typeOf(local));
+                    this.store(local);
+                }
+            }
+            case While w -> {
+                Label start = this.writer.label();
+                Label end = this.writer.label();
+                this.writer.mark(start);
+                this.compile(w.condition(), Type.BOOLEAN);
+                this.writer.jump(IFEQ, -1, end);
+                this.compile(w.body());
+                this.writer.jump(GOTO, 0, start);
+                this.writer.mark(end);
+            }
+        }
+    }
+
+    private void compile(Expr expr, Type wanted) {
+        this.coerce(this.compile(expr), wanted);
+    }
+
+    @SuppressWarnings("unused")
+    private Type compile(Expr expr) {
+        return switch (expr) {
+            case Assign a -> {
+                if (a.isGlobal()) {
+                    this.writer.local(ALOAD, 1, 0);
+                    this.token(a.token());
+                    this.compile(a.value(), Type.OBJECT);
+                    this.invokeStatic(
+                        RUNTIME,
+                        "assign",
+                        "(L" + ENVIRONMENT + ";" + TOKEN + OBJECT + ")" + OBJECT,
+                        -2
+                    );
+
+                    yield Type.OBJECT;
+                }
+
+                Local local = this.locals.get(a);
+                Type type = this.typeOf(local);
+                this.compile(a.value(), type);
+                this.writer.op(type == Type.DOUBLE ? DUP2 : DUP, type == Type.DOUBLE ? 2 : 1);
+                this.store(local);
+
+                yield type;
+            }
+            case Binary b -> this.binary(b);
+            case Grouping g -> this.compile(g.expr());
+            case Literal l -> this.literal(l.value());
+            case Logical l -> this.logical(l);
+            case NullExpr n -> {
+                this.writer.op(ACONST_NULL, 1);
+
+                yield Type.OBJECT;
+            }
+            case Unary u -> {
+                if (u.tokenType() == TokenType.MINUS) {
+                    this.compile(u.right(), Type.DOUBLE);
+                    this.writer.op(DNEG, 0);
+
+                    yield Type.DOUBLE;
+                }
+
+                this.compile(u.right(), Type.BOOLEAN);
+                this.writer.op(ICONST_1, 1);
+                this.writer.op(IXOR, -1);
+
+                yield Type.BOOLEAN;
+            }
+            case Variable v -> {
+                if (v.isGlobal()) {
+                    this.writer.local(ALOAD, 1, 0);
+                    this.token(v.token());
+                    this.invokeVirtual(ENVIRONMENT, "get", "(" + TOKEN + ")" + OBJECT, -1);
+
+                    yield Type.OBJECT;
+                }
+
+                Local local = this.locals.get(v);
+                if (local.isDouble) {
+                    this.writer.local(DLOAD, 2, local.index);
+
+                    yield Type.DOUBLE;
+                }
+
+                this.writer.local(ALOAD, 1, local.index);
+
+                yield Type.OBJECT;
+            }
+        };
+    }
+
+    private Type literal(Object value) {
+        if (value instanceof Double d) {
+            this.writer.op(LDC2_W, 2, this.writer.doubleConstant(d));
+
+            return Type.DOUBLE;
+        }
+
+        if (value instanceof Boolean b) {
+            this.writer.op(b ? ICONST_1 : ICONST_0, 1);
+
+            return Type.BOOLEAN;
+        }
+
+        if (value instanceof String s) {
+            this.writer.op(LDC_W, 1, this.writer.string(s));
+        } else {
+            this.writer.op(ACONST_NULL, 1);
+        }
+
+        return Type.OBJECT;
+    }
+
+    /**
+     * Operands are evaluated left to right before either is checked so type
+     * errors surface in the same order as in the {@link Interpreter}. When the
+     * left operand isn't statically a number both are passed boxed to
+     * {@link JvmRuntime}.
+     */
+    private Type binary(Binary b) {
+        TokenType type = b.tokenType();
+        Type left = this.typeOf(b.left());
+        Type right = this.typeOf(b.right());
+
+        if (type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL) {
+            if (left == Type.DOUBLE && right == Type.DOUBLE) {
+                this.compile(b.left(), Type.DOUBLE);
+                this.compile(b.right(), Type.DOUBLE);
+                this.invokeStatic(RUNTIME, "equal", "(DD)Z", -3);
+            } else {
+                this.compile(b.left(), Type.OBJECT);
+                this.compile(b.right(), Type.OBJECT);
+                this.invokeStatic(OPERATORS, "isEqual", "(" + OBJECT + OBJECT + ")Z", -1);
+            }
+
+            if (type == TokenType.BANG_EQUAL) {
+                this.writer.op(ICONST_1, 1);
+                this.writer.op(IXOR, -1);
+            }
+
+            return Type.BOOLEAN;
+        }
+
+        if (type == TokenType.PLUS && (left != Type.DOUBLE || right != Type.DOUBLE)) {
+            this.compile(b.left(), Type.OBJECT);
+            this.compile(b.right(), Type.OBJECT);
+            this.invokeStatic("com/github/gdoenlen/lox/Operators", "plus", "(" + OBJECT + OBJECT + ")" + OBJECT, -1);
+
+            return Type.OBJECT;
+        }
+
+        if (left != Type.DOUBLE) {
+            this.compile(b.left(), Type.OBJECT);
+            this.compile(b.right(), Type.OBJECT);
+            boolean comparison = isComparison(type);
+            this.invokeStatic(RUNTIME, runtimeName(type), "(" + OBJECT + OBJECT + ")" + (comparison ? "Z" : "D"), comparison ? -1 : 0);
+
+            return comparison ? Type.BOOLEAN : Type.DOUBLE;
+        }
+
+        this.compile(b.left(), Type.DOUBLE);
+        this.compile(b.right(), Type.DOUBLE);
+        switch (type) {
+            case MINUS -> this.writer.op(DSUB, -2);
+            case PLUS -> this.writer.op(DADD, -2);
+            case SLASH -> this.writer.op(DDIV, -2);
+            case STAR -> this.writer.op(DMUL, -2);
+            case GREATER -> this.compare(DCMPL, IFGT);
+            case GREATER_EQUAL -> this.compare(DCMPL, IFGE);
+            case LESS -> this.compare(DCMPG, IFLT);
+            case LESS_EQUAL -> this.compare(DCMPG, IFLE);
+            default -> throw new IllegalArgumentException(type.toString());
+        }
+
+        return isComparison(type) ? Type.BOOLEAN : Type.DOUBLE;
+    }
+
+    private static String runtimeName(TokenType type) {
+        return switch (type) {
+            case MINUS -> "subtract";
+            case SLASH -> "divide";
+            case STAR -> "multiply";
+            case GREATER -> "greater";
+            case GREATER_EQUAL -> "greaterEqual";
+            case LESS -> "less";
+            case LESS_EQUAL -> "lessEqual";
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    private static boolean isComparison(TokenType type) {
+        return switch (type) {
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * {@code dcmpl} for greater and {@code dcmpg} for less so that NaN compares false.
+     */
+    private void compare(int cmp, int branch) {
+        Label isTrue = this.writer.label();
+        Label end = this.writer.label();
+        this.writer.op(cmp, -3);
+        this.writer.jump(branch, -1, isTrue);
+        this.writer.op(ICONST_0, 1);
+        this.writer.jump(GOTO, 0, end);
+        this.writer.mark(isTrue);
+        this.writer.stack(this.writer.stack() - 1);
+        this.writer.op(ICONST_1, 1);
+        this.writer.mark(end);
+    }
+
+    private Type logical(Logical l) {
+        Label end = this.writer.label();
+        if (this.typeOf(l.left()) == Type.BOOLEAN && this.typeOf(l.right()) == Type.BOOLEAN) {
+            this.compile(l.left(), Type.BOOLEAN);
+            this.writer.op(DUP, 1);
+            this.writer.jump(l.isOr() ? IFNE : IFEQ, -1, end);
+            this.writer.op(POP, -1);
+            this.compile(l.right(), Type.BOOLEAN);
+            this.writer.mark(end);
+
+            return Type.BOOLEAN;
+        }
+
+        this.compile(l.left(), Type.OBJECT);
+        this.writer.op(DUP, 1);
+        this.invokeStatic("com/github/gdoenlen/lox/Operators", "isTruthy", "(" + OBJECT + ")Z", 0);
+        this.writer.jump(l.isOr() ? IFNE : IFEQ, -1, end);
+        this.writer.op(POP, -1);
+        this.compile(l.right(), Type.OBJECT);
+        this.writer.mark(end);
+
+        return Type.OBJECT;
+    }
+
+    private void coerce(Type from, Type to) {
+        if (from == to) {
+            return;
+        }
+
+        switch (to) {
+            case OBJECT -> {
+                if (from == Type.DOUBLE) {
+                    this.invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+                } else {
+                    this.invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+                }
+            }
+            case DOUBLE -> {
+                this.coerce(from, Type.OBJECT);
+                this.writer.op(CHECKCAST, 0, this.writer.classRef("java/lang/Double"));
+                this.invokeVirtual("java/lang/Double", "doubleValue", "()D", 1);
+            }
+            case BOOLEAN -> {
+                if (from == Type.DOUBLE) {
+                    // numbers are always truthy
+                    this.writer.op(POP2, -2);
+                    this.writer.op(ICONST_1, 1);
+                } else {
+                    this.invokeStatic("com/github/gdoenlen/lox/Operators", "isTruthy", "(" + OBJECT + ")Z", 0);
+                }
+            }
+        }
+    }
+
+    private void pop(Type type) {
+        this.writer.op(type == Type.DOUBLE ? POP2 : POP, type == Type.DOUBLE ? -2 : -1);
+    }
+
+    private void store(Local local) {
+        if (local.isDouble) {
+            this.writer.local(DSTORE, -2, local.index);
+        } else {
+            this.writer.local(ASTORE, -1, local.index);
+        }
+    }
+
+    private void token(Token token) {
+        int index = this.tokens.computeIfAbsent(token, t -> this.tokens.size());
+
+        this.writer.local(ALOAD, 1, 1);
+        this.writer.sipush(index);
+        this.writer.op(AALOAD, -1);
+    }
+
+    private void invokeStatic(String owner, String name, String descriptor, int stackEffect) {
+        this.writer.op(INVOKESTATIC, stackEffect, this.writer.methodRef(owner, name, descriptor));
+    }
+
+    private void invokeVirtual(String owner, String name, String descriptor, int stackEffect) {
+        this.writer.op(INVOKEVIRTUAL, stackEffect, this.writer.methodRef(owner, name, descriptor));
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.gdoenlen.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+
+/**
+ * Runs programs compiled to JVM bytecode by the {@link JvmCompiler}.
+ *
+ * Each program is loaded as a hidden class that nothing but this call
+ * references, so it can be unloaded once it has run. Programs the compiler
+ * can't fit in a class file are run by the tree walking {@link Interpreter}
+ * instead, both share the same globals.
+ */
+class JvmInterpreter {
+    private static final MethodType RUN = MethodType.methodType(
+        void.class,
+        Environment.class,
+        Token[].class,
+        OutputSink.class
+    );
+
+    private final Environment globals = new Environment();
+    private final OutputSink out;
+    private final Interpreter fallback;
+
+    JvmInterpreter() {
+        this(OutputSink.stdout());
+    }
+
+    JvmInterpreter(OutputSink out) {
+        this.out = out;
+        this.fallback = new Interpreter(this.globals, out);
+    }
+
+    void interpret(Collection<Statement> statements) {
+        var compiler = new JvmCompiler();
+        MethodHandle program;
+        try {
+            byte[] bytes = compiler.compile(statements);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            program = lookup.findStatic(lookup.lookupClass(), "run", RUN);
+        } catch (UnsupportedOperationException ex) {
+            statements.forEach(this.fallback::interpret);
+
+            return;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        try {
+            program.invokeExact(this.globals, compiler.tokens(), this.out);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Helpers called from code generated by the {@link JvmCompiler} for the
+ * cases it doesn't inline. Operands arrive boxed and in evaluation order,
+ * the casts fail the same way the {@link Interpreter}'s do.
+ */
+final class JvmRuntime {
+    private JvmRuntime() {}
+
+    static Object assign(Environment globals, Token token, Object value) {
+        globals.assign(token, value);
+
+        return value;
+    }
+
+    /**
+     * {@link Double#equals(Object)} semantics without boxing.
+     */
+    static boolean equal(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static double subtract(Object left, Object right) {
+        return (Double) left - (Double) right;
+    }
+
+    static double divide(Object left, Object right) {
+        return (Double) left / (Double) right;
+    }
+
+    static double multiply(Object left, Object right) {
+        return (Double) left * (Double) right;
+    }
+
+    static boolean greater(Object left, Object right) {
+        return (Double) left > (Double) right;
+    }
+
+    static boolean greaterEqual(Object left, Object right) {
+        return (Double) left >= (Double) right;
+    }
+
+    static boolean less(Object left, Object right) {
+        return (Double) left < (Double) right;
+    }
+
+    static boolean lessEqual(Object left, Object right) {
+        return (Double) left <= (Double) right;
+    }
+}
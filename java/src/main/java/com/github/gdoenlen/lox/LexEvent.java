@@ -0,0 +1,32 @@
+package com.github.gdoenlen.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lexing a whole program, begins when created. Only create it when
+ * {@link Monitoring#recording()}, loading the class starts up JFR.
+ */
+@Name("com.github.gdoenlen.lox.Lex")
+@Label("Lex")
+@Category("Lox")
+@Description("Scanning a program into tokens")
+final class LexEvent extends jdk.jfr.Event {
+    @Label("Source")
+    String source;
+
+    @Label("Tokens")
+    int tokens;
+
+    LexEvent() {
+        this.begin();
+    }
+
+    void commit(String source, int tokens) {
+        this.source = source;
+        this.tokens = tokens;
+        this.commit();
+    }
+}
@@ -1,36 +1,122 @@
 package com.github.gdoenlen.lox;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static com.github.gdoenlen.lox.TokenType.*;
 import static java.lang.Character.isAlphabetic;
 import static java.lang.Character.isDigit;
 
+/**
+ * Scans source into a {@link TokenBuffer} without allocating per token:
+ * keywords are matched in place, numbers are parsed straight from the source
+ * and no lexeme is cut out until someone asks for it.
+ *
+ * The source can also be a window of a longer program, see
+ * {@link #scanWindow()}, which is how the {@link StreamingLexer} scans.
+ */
 class Lexer {
     private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final TokenBuffer tokens;
+    private final CharScanner scanner;
+    private final Symbols symbols;
+    private final ErrorReporter errors;
     private int start = 0;
     private int current = 0;
-    private int line = 1;
+    private int line;
+    private int limit;
+    private boolean window = false;
 
+    /**
+     * Lexes a program of its own, with a new {@link Symbols}.
+     */
     Lexer(String source) {
+        this(source, new Symbols());
+    }
+
+    /**
+     * @param symbols the table of the program {@code source} is part of
+     */
+    Lexer(String source, Symbols symbols) {
+        this(source, CharScanner.of(source), symbols, Main::error);
+    }
+
+    Lexer(String source, CharScanner scanner) {
+        this(source, scanner, new Symbols(), Main::error);
+    }
+
+    Lexer(String source, CharScanner scanner, Symbols symbols, ErrorReporter errors) {
+        this(source, scanner, 1, symbols, errors);
+    }
+
+    /**
+     * @param line the line {@code window} starts on
+     */
+    Lexer(String window, int line, Symbols symbols, ErrorReporter errors) {
+        this(window, CharScanner.of(window), line, symbols, errors);
+    }
+
+    private Lexer(String source, CharScanner scanner, int line, Symbols symbols, ErrorReporter errors) {
         this.source = source;
+        this.tokens = new TokenBuffer(source);
+        this.scanner = scanner;
+        this.line = line;
+        this.limit = source.length();
+        this.symbols = symbols;
+        this.errors = errors;
     }
 
+    /**
+     * Every token materialized as a {@link Token}.
+     */
     List<Token> scan() {
+        return this.scanColumnar().toList();
+    }
+
+    TokenBuffer scanColumnar() {
         while (this.hasNext()) {
             this.start = current;
             this.scanToken();
         }
 
-        this.tokens.add(new Token(EOF, "", null, this.line));
+        this.tokens.add(EOF, this.current, this.current, this.line);
 
-        return tokens;
+        return this.tokens;
+    }
+
+    /**
+     * Scans a window of a longer program that ends in a newline, and is
+     * followed by more of it. A token never runs past a newline, but a
+     * string can: one that isn't closed in the window is left out, to be
+     * scanned with what follows from {@link #scanned()}. The tokens have no
+     * EOF, that's only at the end of the last window, scanned with
+     * {@link #scanColumnar()}.
+     */
+    TokenBuffer scanWindow() {
+        this.window = true;
+        while (this.hasNext()) {
+            this.start = current;
+            this.scanToken();
+        }
+
+        return this.tokens;
+    }
+
+    /**
+     * How much of the source the tokens cover.
+     */
+    int scanned() {
+        return this.current;
+    }
+
+    /**
+     * The line the scan ended on.
+     */
+    int line() {
+        return this.line;
     }
 
     private boolean hasNext() {
-        return this.current < source.length();
+        return this.current < this.limit;
     }
 
     private void scanToken() {
@@ -39,12 +125,18 @@ class Lexer {
         try {
             type = this.typeOf(c);
         } catch (IllegalArgumentException ex) {
-            Main.error(this.line, "Unexpected character: " + c);
+            this.errors.error(this.line, "Unexpected character: " + c);
+
+            return;
+        }
+
+        if (type == WHITE_SPACE) {
+            this.current = this.scanner.skipBlanks(this.current);
 
             return;
         }
 
-        if (type == COMMENT || type == WHITE_SPACE) {
+        if (type == COMMENT) {
             return;
         }
 
@@ -54,31 +146,41 @@ class Lexer {
             return;
         }
 
-        Object value = null;
         if (type == STRING) {
-            value = this.string();
+            if (this.window && this.scanner.indexOf('"', this.current) == this.source.length()) {
+                // closed in a later window, it's scanned again with it
+                this.current = this.start;
+                this.limit = this.start;
+
+                return;
+            }
+
+            // strings can span lines, the token gets the line it started on
+            int startLine = this.line;
+            this.string();
+            this.tokens.add(STRING, this.start, this.current, startLine);
+
+            return;
         }
 
         if (type == NUMBER) {
-            value = this.number();
+            this.tokens.addNumber(this.start, this.current, this.line, this.number());
+
+            return;
         }
 
         if (type == IDENTIFIER) {
-            value = this.identifier();
-
-            TokenType t;
-            try {
-                t = TokenType.valueOf(value.toString().toUpperCase()); // todo this shouldn't be case insensitive
-            } catch (IllegalArgumentException ex) {
-                t = IDENTIFIER;
-            }
+            this.identifier();
+            type = this.keyword();
+            if (type == IDENTIFIER) {
+                int symbol = this.symbols.intern(this.source, this.start, this.current);
+                this.tokens.addIdentifier(this.start, this.current, this.line, symbol);
 
-            if (t.isReserved()) {
-                type = t;
+                return;
             }
         }
 
-        this.addToken(type, value);
+        this.addToken(type);
     }
 
     private char advance() {
@@ -86,12 +188,7 @@ class Lexer {
     }
 
     private void addToken(TokenType type) {
-        this.addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        String text = this.source.substring(this.start, this.current);
-        this.tokens.add(new Token(type, text, literal, this.line));
+        this.tokens.add(type, this.start, this.current, this.line);
     }
 
     private TokenType typeOf(char c) {
@@ -113,9 +210,7 @@ class Lexer {
             case '/' -> {
                 // todo move the advancement logic to the scan function
                 if (this.match('/')) {
-                    while (this.peek() != '\n' && !this.hasNext()) {
-                        this.advance();
-                    }
+                    this.current = this.scanner.indexOf('\n', this.current);
 
                     yield COMMENT;
                 } else {
@@ -154,40 +249,61 @@ class Lexer {
         return this.source.charAt(this.current);
     }
 
-    private String string() {
-        while (this.peek() != '"' && this.hasNext()) {
-            if (this.peek() == '\n') {
-                this.line++;
-            }
-            this.advance();
-        }
+    private void string() {
+        int end = this.scanner.indexOf('"', this.current);
+        this.line += this.scanner.count('\n', this.current, end);
+        this.current = end;
 
         if (!this.hasNext()) {
-            Main.error(this.line, "Unterminated string.");
+            this.errors.error(this.line, "Unterminated string.");
+
+            return;
         }
 
         // The close ".
         this.advance();
-
-        return this.source.substring(start + 1, current - 1);
     }
 
-    private Double number() {
-        while (isDigit(this.peek())) {
-            this.advance();
+    /**
+     * Integers and decimals with up to 15 significant digits, which covers
+     * nearly every literal, are exact in a {@code long} and so is the power
+     * of ten to divide by: one correctly rounded division gives the same
+     * result as {@link Double#parseDouble(String)}. Longer literals go through it.
+     */
+    private double number() {
+        long mantissa = this.source.charAt(this.start) - '0';
+        int digits = 1;
+        int scale = 0;
+        int end = this.scanner.skipDigits(this.current);
+        digits += end - this.current;
+        while (this.current < end) {
+            mantissa = mantissa * 10 + (this.advance() - '0');
         }
 
-        if (this.peek() == '.' && isDigit(this.peekNext())) {
+        if (this.peek() == '.' && isAsciiDigit(this.peekNext())) {
             this.advance();
         }
 
-        while (isDigit(this.peek())) {
-            this.advance();
+        end = this.scanner.skipDigits(this.current);
+        digits += end - this.current;
+        scale += end - this.current;
+        if (digits > 15) {
+            this.current = end;
+
+            return Double.parseDouble(this.source.substring(start, current));
+        }
+
+        while (this.current < end) {
+            mantissa = mantissa * 10 + (this.advance() - '0');
         }
 
-        return Double.valueOf(this.source.substring(start, current));
+        return scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
     }
 
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
     private char peekNext() {
         if (this.current + 1 >= this.source.length()) {
             return '\0';
@@ -196,12 +312,72 @@ class Lexer {
         return this.source.charAt(current + 1);
     }
 
-    private String identifier() {
+    private void identifier() {
+        this.current = this.scanner.skipAlphaNumerics(this.current);
         while (isAlphaNumeric(this.peek())) {
             this.advance();
         }
+    }
+
+    /**
+     * The reserved word spelled by the identifier just scanned, or {@link TokenType#IDENTIFIER}.
+     */
+    private TokenType keyword() {
+        return keyword(this.source, this.start, this.current);
+    }
+
+    /**
+     * The reserved word spelled by {@code text[start, end)}, or {@link TokenType#IDENTIFIER}.
+     */
+    private static TokenType keyword(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > 6) {
+            return IDENTIFIER;
+        }
+
+        return switch (text.charAt(start)) {
+            case 'a' -> keyword(text, start, length, "and", AND);
+            case 'c' -> keyword(text, start, length, "class", CLASS);
+            case 'e' -> keyword(text, start, length, "else", ELSE);
+            case 'f' -> switch (text.charAt(start + 1)) {
+                case 'a' -> keyword(text, start, length, "false", FALSE);
+                case 'o' -> keyword(text, start, length, "for", FOR);
+                case 'u' -> keyword(text, start, length, "fun", FUN);
+                default -> IDENTIFIER;
+            };
+            case 'i' -> keyword(text, start, length, "if", IF);
+            case 'n' -> keyword(text, start, length, "nil", NIL);
+            case 'o' -> keyword(text, start, length, "or", OR);
+            case 'p' -> keyword(text, start, length, "print", PRINT);
+            case 'r' -> keyword(text, start, length, "return", RETURN);
+            case 's' -> keyword(text, start, length, "super", SUPER);
+            case 't' -> switch (text.charAt(start + 1)) {
+                case 'h' -> keyword(text, start, length, "this", THIS);
+                case 'r' -> keyword(text, start, length, "true", TRUE);
+                default -> IDENTIFIER;
+            };
+            case 'v' -> keyword(text, start, length, "var", VAR);
+            case 'w' -> keyword(text, start, length, "while", WHILE);
+            default -> IDENTIFIER;
+        };
+    }
+
+    private static TokenType keyword(CharSequence text, int start, int length, String word, TokenType type) {
+        if (length != word.length()) {
+            return IDENTIFIER;
+        }
+
+        for (int i = 1; i < length; i++) {
+            if (text.charAt(start + i) != word.charAt(i)) {
+                return IDENTIFIER;
+            }
+        }
+
+        return type;
+    }
 
-        return this.source.substring(start, current);
+    static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     private static boolean isAlphaNumeric(char c) {
@@ -0,0 +1,26 @@
+package com.github.gdoenlen.lox;
+
+final class LocalReadNode extends ExprNode {
+    private final int depth;
+    private final int slot;
+
+    LocalReadNode(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        return frame.ancestor(this.depth).get(this.slot);
+    }
+
+    @Override
+    double executeDouble(NodeFrame frame) throws UnexpectedResultException {
+        return frame.ancestor(this.depth).getDouble(this.slot);
+    }
+
+    @Override
+    void executeVoid(NodeFrame frame) {
+        // reading a local has no side effects
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Assigns or defines a local. Starts {@link Uninitialized} and rewrites itself
+ * on the first write: to {@link Doubles} when the value was a number, which
+ * keeps the local unboxed in its {@link NodeFrame}, or to {@link Generic}.
+ * A non number reaching {@link Doubles} rewrites it to {@link Generic} for good.
+ */
+abstract class LocalWriteNode extends ExprNode {
+    protected final int depth;
+    protected final int slot;
+    protected ExprNode value;
+
+    private LocalWriteNode(int depth, int slot, ExprNode value) {
+        this.depth = depth;
+        this.slot = slot;
+        this.value = this.adopt(value);
+    }
+
+    static LocalWriteNode create(int depth, int slot, ExprNode value) {
+        return new Uninitialized(depth, slot, value);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.value == oldChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+
+    protected Object generic(NodeFrame frame, Object result) {
+        this.replace(new Generic(this.depth, this.slot, this.value));
+        frame.ancestor(this.depth).set(this.slot, result);
+
+        return result;
+    }
+
+    private static final class Uninitialized extends LocalWriteNode {
+        Uninitialized(int depth, int slot, ExprNode value) {
+            super(depth, slot, value);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            Object result = this.value.execute(frame);
+            if (result instanceof Double d) {
+                this.replace(new Doubles(this.depth, this.slot, this.value));
+                frame.ancestor(this.depth).setDouble(this.slot, d);
+
+                return result;
+            }
+
+            return this.generic(frame, result);
+        }
+    }
+
+    private static final class Doubles extends LocalWriteNode {
+        Doubles(int depth, int slot, ExprNode value) {
+            super(depth, slot, value);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            try {
+                return this.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result();
+            }
+        }
+
+        @Override
+        double executeDouble(NodeFrame frame) throws UnexpectedResultException {
+            double result;
+            try {
+                result = this.value.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                throw new UnexpectedResultException(this.generic(frame, ex.result()));
+            }
+
+            frame.ancestor(this.depth).setDouble(this.slot, result);
+
+            return result;
+        }
+
+        @Override
+        void executeVoid(NodeFrame frame) {
+            try {
+                this.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                // already stored and respecialized
+            }
+        }
+    }
+
+    private static final class Generic extends LocalWriteNode {
+        Generic(int depth, int slot, ExprNode value) {
+            super(depth, slot, value);
+        }
+
+        @Override
+        Object execute(NodeFrame frame) {
+            Object result = this.value.execute(frame);
+            frame.ancestor(this.depth).set(this.slot, result);
+
+            return result;
+        }
+    }
+}
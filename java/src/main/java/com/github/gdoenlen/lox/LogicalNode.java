@@ -0,0 +1,48 @@
+package com.github.gdoenlen.lox;
+
+import static com.github.gdoenlen.lox.Operators.isTruthy;
+
+/**
+ * {@code and} / {@code or}. When only the truthiness of the result is needed,
+ * e.g. in a loop condition, the operands are asked for their truthiness
+ * directly instead of producing a value first.
+ */
+final class LogicalNode extends ExprNode {
+    private final boolean or;
+    private ExprNode left;
+    private ExprNode right;
+
+    LogicalNode(boolean or, ExprNode left, ExprNode right) {
+        this.or = or;
+        this.left = this.adopt(left);
+        this.right = this.adopt(right);
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        Object l = this.left.execute(frame);
+        if (isTruthy(l) == this.or) {
+            return l;
+        }
+
+        return this.right.execute(frame);
+    }
+
+    @Override
+    boolean executeTruthy(NodeFrame frame) {
+        if (this.or) {
+            return this.left.executeTruthy(frame) || this.right.executeTruthy(frame);
+        }
+
+        return this.left.executeTruthy(frame) && this.right.executeTruthy(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.left == oldChild) {
+            this.left = (ExprNode) newChild;
+        } else if (this.right == oldChild) {
+            this.right = (ExprNode) newChild;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The entry point for embedding the interpreter:
+ *
+ * <pre>{@code
+ * LoxProgram program = Lox.compile(source);
+ * program.execute(out);
+ * }</pre>
+ *
+ * Unlike {@link Main} nothing here is shared between compilations or
+ * executions, each collects its own errors and writes to its own output,
+ * so any number of them can run at once.
+ */
+public final class Lox {
+    private Lox() {}
+
+    /**
+     * Lexes, parses and resolves {@code source} once, the program can be
+     * executed as often as needed.
+     *
+     * @throws LoxException with every error in the source
+     */
+    public static LoxProgram compile(String source) throws LoxException {
+        var diagnostics = new ArrayList<Diagnostic>();
+        ErrorReporter errors = (line, message) -> diagnostics.add(new Diagnostic(line, message));
+
+        TokenBuffer tokens = new Lexer(source, CharScanner.of(source), new Symbols(), errors).scanColumnar();
+        Collection<Statement> statements = new Parser(tokens, errors).parse();
+        if (diagnostics.isEmpty()) {
+            statements = new Resolver(errors).resolve(statements);
+        }
+
+        if (!diagnostics.isEmpty()) {
+            throw new LoxException(diagnostics);
+        }
+
+        statements = new ScopeFlattener().flatten(statements);
+
+        return new LoxProgram(List.copyOf(statements));
+    }
+
+    /**
+     * The implementation version from the jar's manifest, {@code dev} when not run from one.
+     */
+    static String version() {
+        String version = Lox.class.getPackage().getImplementationVersion();
+
+        return version == null ? "dev" : version;
+    }
+}
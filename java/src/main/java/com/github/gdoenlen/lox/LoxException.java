@@ -0,0 +1,23 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A program that doesn't compile, with everything that's wrong with it, or
+ * one that failed while running, with the one error that stopped it.
+ */
+public final class LoxException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Diagnostic> diagnostics;
+
+    LoxException(List<Diagnostic> diagnostics) {
+        super(diagnostics.stream().map(Diagnostic::toString).collect(Collectors.joining("\n")));
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public List<Diagnostic> diagnostics() {
+        return this.diagnostics;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.gdoenlen.lox;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A compiled program, see {@link Lox#compile(String)}. It's immutable, every
+ * execution gets its own globals and {@link Interpreter}, so one program
+ * can be executed by any number of threads at once.
+ */
+public final class LoxProgram {
+    private final List<Statement> statements;
+
+    LoxProgram(List<Statement> statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Runs the program, {@code print} writing UTF-8 to {@code out}. The
+     * output is buffered and flushed when the program ends, failed or not.
+     *
+     * @throws LoxException when the program fails, like adding a number to a boolean
+     */
+    public void execute(OutputStream out) throws LoxException {
+        var sink = new OutputSink(out, OutputSink.DEFAULT_SIZE, OutputSink.Flush.FULL);
+        var interpreter = new Interpreter(new Environment(), sink);
+        try {
+            for (Statement statement : this.statements) {
+                interpreter.interpret(statement);
+            }
+        } catch (UndefinedVariableException ex) {
+            throw failed(ex.getToken().line(), "Undefined variable '" + ex.getToken().lexeme() + "'.");
+        } catch (OperandTypeException ex) {
+            throw failed(ex.getToken().line(), ex.getMessage());
+        } finally {
+            sink.flush();
+        }
+    }
+
+    private static LoxException failed(int line, String message) {
+        return new LoxException(List.of(new Diagnostic(line, message)));
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.gdoenlen.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+/**
+ * {@code javax.script} on top of {@link Lox}. {@code print} writes to the
+ * context's writer, errors are written to its error writer and thrown as a
+ * {@link ScriptException} with the line of the first one. Scripts don't
+ * have a value, {@code eval} returns {@code null}.
+ *
+ * {@link #compile(String)} returns a {@link CompiledScript} that can be
+ * evaluated over and over, from any thread, without parsing again.
+ */
+final class LoxScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final ScriptEngineFactory factory;
+
+    LoxScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return this.compile(script, context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return this.eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return this.compile(script, this.context);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return this.compile(read(script));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return this.factory;
+    }
+
+    private CompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        try {
+            return new Compiled(this, Lox.compile(script));
+        } catch (LoxException ex) {
+            throw failed(ex, context);
+        }
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        var script = new StringBuilder();
+        var buffer = new char[8192];
+        try {
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                script.append(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new ScriptException(ex);
+        }
+
+        return script.toString();
+    }
+
+    /**
+     * Writes every diagnostic to the context's error writer.
+     */
+    private static ScriptException failed(LoxException ex, ScriptContext context) {
+        Writer errors = context.getErrorWriter();
+        try {
+            for (Diagnostic diagnostic : ex.diagnostics()) {
+                errors.write(diagnostic.toString());
+                errors.write(System.lineSeparator());
+            }
+
+            errors.flush();
+        } catch (IOException io) {
+            ex.addSuppressed(io);
+        }
+
+        Diagnostic first = ex.diagnostics().get(0);
+        Object file = context.getAttribute(ScriptEngine.FILENAME);
+        var failed = new ScriptException(first.message(), file == null ? null : file.toString(), first.line());
+        failed.initCause(ex);
+
+        return failed;
+    }
+
+    private static final class Compiled extends CompiledScript {
+        private final ScriptEngine engine;
+        private final LoxProgram program;
+
+        private Compiled(ScriptEngine engine, LoxProgram program) {
+            this.engine = engine;
+            this.program = program;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            try {
+                this.program.execute(new WriterStream(context.getWriter()));
+            } catch (LoxException ex) {
+                throw failed(ex, context);
+            }
+
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return this.engine;
+        }
+    }
+
+    /**
+     * The bytes {@link OutputSink} writes, decoded back for a {@link Writer}.
+     * The sink only ever writes whole UTF-8 sequences, a character is never
+     * split between two writes.
+     */
+    private static final class WriterStream extends OutputStream {
+        private final Writer writer;
+
+        private WriterStream(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(int b) {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            try {
+                this.writer.write(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void flush() {
+            try {
+                this.writer.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
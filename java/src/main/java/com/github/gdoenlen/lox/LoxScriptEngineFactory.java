@@ -0,0 +1,88 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+/**
+ * Makes Lox available to {@code javax.script}, {@code new ScriptEngineManager().getEngineByName("lox")}.
+ */
+public final class LoxScriptEngineFactory implements ScriptEngineFactory {
+    private static final String LANGUAGE_VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return "Lox";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return Lox.version();
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("lox");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-lox", "text/x-lox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("lox", "Lox");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Lox";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return LANGUAGE_VERSION;
+    }
+
+    /**
+     * Evaluations don't share anything, not even the bindings, which Lox
+     * can't see, so the engine is {@code STATELESS}.
+     */
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> this.getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> this.getEngineVersion();
+            case ScriptEngine.NAME -> this.getNames().get(0);
+            case ScriptEngine.LANGUAGE -> this.getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> this.getLanguageVersion();
+            case "THREADING" -> "STATELESS";
+            default -> null;
+        };
+    }
+
+    /**
+     * @throws UnsupportedOperationException Lox doesn't have methods
+     */
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        throw new UnsupportedOperationException("Lox doesn't have methods");
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "print \"" + toDisplay + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return String.join("\n", statements);
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new LoxScriptEngine(this);
+    }
+}
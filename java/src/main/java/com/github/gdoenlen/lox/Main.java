@@ -7,25 +7,171 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 @SuppressWarnings("java:S106") // s.out usage
 public class Main {
     private static boolean hasError = false;
+    private static final OutputSink out = OutputSink.stdout();
+    /** Shared by the lines of the REPL, the globals one defines are used by the next. */
+    private static final Symbols symbols = new Symbols();
+    private static final Resolver resolver = new Resolver();
+    private static Interpreter interpreter = new Interpreter();
+    private static ProfilingInterpreter profiler = null;
+    private static SamplingInterpreter sampler = null;
+    private static final VirtualMachine vm = new VirtualMachine();
+    private static final NodeInterpreter nodeInterpreter = new NodeInterpreter();
+    private static final JvmInterpreter jvmInterpreter = new JvmInterpreter();
+    private static Backend backend = Backend.TREE;
+    private static boolean optimize = false;
+    private static boolean stream = false;
+    private static ProgramCache cache = null;
 
     private Main() {}
 
     public static void main(String[] args) {
-        if (args.length > 1) {
-            System.out.println("Usage lox [script file]");
-            System.exit(64);
+        if (args.length > 0 && args[0].equals("bench")) {
+            try {
+                Bench.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                usage();
+            }
+
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("run-all")) {
+            int status = 0;
+            try {
+                status = RunAll.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                usage();
+            }
+
+            if (status != 0) {
+                System.exit(status);
+            }
+
+            return;
         }
 
-        if (args.length == 1) {
-            runFile(Paths.get(args[0]));
-        } else {
-            runPrompt();
+        if (args.length > 0 && args[0].equals("daemon")) {
+            try {
+                Daemon.main(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                usage();
+            } catch (IllegalStateException ex) {
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+
+            return;
         }
+
+        if (args.length > 0 && args[0].equals("client")) {
+            System.exit(DaemonClient.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        if (args.length > 0 && (args[0].equals("--train") || args[0].startsWith("--train="))) {
+            if (args.length > 1) {
+                usage();
+            }
+
+            Path archive = args[0].equals("--train") ? null : Paths.get(args[0].substring("--train=".length()));
+            int status = Training.main(archive);
+            if (status != 0) {
+                System.exit(status);
+            }
+
+            return;
+        }
+
+        String script = null;
+        Path samples = null;
+        int rate = 100;
+        for (String arg : args) {
+            if (arg.startsWith("--backend=")) {
+                try {
+                    backend = Backend.of(arg.substring("--backend=".length()));
+                } catch (IllegalArgumentException ex) {
+                    usage();
+                }
+            } else if (arg.equals("-O")) {
+                optimize = true;
+            } else if (arg.equals("--stream")) {
+                stream = true;
+            } else if (arg.startsWith("--cache=")) {
+                cache = new ProgramCache(Paths.get(arg.substring("--cache=".length())));
+            } else if (arg.equals("--profile")) {
+                profiler = new ProfilingInterpreter();
+                interpreter = profiler;
+            } else if (arg.startsWith("--sample=")) {
+                samples = Paths.get(arg.substring("--sample=".length()));
+            } else if (arg.startsWith("--sample-rate=")) {
+                try {
+                    rate = Integer.parseInt(arg.substring("--sample-rate=".length()));
+                } catch (NumberFormatException ex) {
+                    usage();
+                }
+            } else if (script == null && !arg.startsWith("-")) {
+                script = arg;
+            } else {
+                usage();
+            }
+        }
+
+        if (samples != null) {
+            try {
+                sampler = new SamplingInterpreter(rate);
+            } catch (IllegalArgumentException ex) {
+                usage();
+            }
+
+            interpreter = sampler;
+        }
+
+        if ((profiler != null || sampler != null) && (backend != Backend.TREE || profiler != null && sampler != null)) {
+            usage();
+        }
+
+        Monitoring.watch(interpreter);
+        Path path = script == null ? null : Paths.get(script);
+        if (sampler != null) {
+            sampler.start();
+        }
+
+        // stdout is only written out when its buffer fills, don't lose what a script printed when it's interrupted
+        Runtime.getRuntime().addShutdownHook(new Thread(out::flush));
+        try {
+            if (script != null && stream) {
+                runStream(path);
+            } else if (script != null) {
+                runFile(path);
+            } else {
+                runPrompt();
+            }
+        } finally {
+            out.flush();
+            if (profiler != null) {
+                System.err.print(profiler.report(path));
+            }
+
+            if (sampler != null) {
+                sampler.stop(samples);
+            }
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage lox [-O] [--stream] [--cache=dir] [--profile | --sample=file [--sample-rate=hz]] [--backend=tree|vm|ast|jvm] [script file]");
+        System.out.println("      lox bench [--runs=N] [--jvms=N] [--backend=tree|vm|ast|jvm] [--archive=file] dir");
+        System.out.println("      lox run-all [--parallelism=N] dir|manifest");
+        System.out.println("      lox daemon [--socket=path]");
+        System.out.println("      lox client [--socket=path] [script file]");
+        System.out.println("      lox --train[=archive]");
+        System.exit(64);
     }
 
     private static void runFile(Path path) {
@@ -36,38 +182,156 @@ public class Main {
             throw new UncheckedIOException(ex);
         }
 
-        run(content);
+        run(content, path.toString(), cache);
         if (hasError) {
-            System.exit(65);
+            exit(65);
         }
     }
 
-    private static void run(String program) {
-        var lexer = new Lexer(program);
-        var parser = new Parser(lexer.scan());
-        var interpreter = new Interpreter();
+    /**
+     * @param source where the program came from, for the JFR events
+     * @param cache where to look for the parsed program first, and save it to, if not {@code null}
+     */
+    private static void run(String program, String source, ProgramCache cache) {
+        boolean recording = Monitoring.recording();
+        Collection<Statement> statements = cache == null ? null : cache.load(program, symbols);
+        ParseEvent parsing = null;
+        int tokens = 0;
+        if (statements == null) {
+            LexEvent lexing = recording ? new LexEvent() : null;
+            var lexer = new Lexer(program, symbols);
+            TokenBuffer buffer = lexer.scanColumnar();
+            tokens = buffer.size();
+            if (lexing != null) {
+                lexing.commit(source, tokens);
+            }
+
+            parsing = recording ? new ParseEvent() : null;
+            var parser = new Parser(buffer);
 
-        Collection<Statement> statements = parser.parse();
+            statements = parser.parse();
+
+            if (hasError) {
+                return;
+            }
+
+            if (cache != null) {
+                cache.store(program, statements);
+            }
+        }
+
+        if (optimize) {
+            var optimizer = new Optimizer();
+            statements = optimizer.optimize(statements);
+            System.err.println(optimizer.report());
+        }
+
+        statements = resolver.resolve(statements);
 
         if (hasError) {
             return;
         }
 
-        for (Statement statement : statements) {
-            interpreter.interpret(statement);
+        if (backend == Backend.TREE) {
+            statements = new ScopeFlattener().flatten(statements);
+        }
+
+        if (parsing != null) {
+            parsing.commit(source, tokens, statements.size());
+        }
+
+        ExecuteEvent executing = recording ? new ExecuteEvent() : null;
+        execute(statements);
+        if (executing != null) {
+            executing.commit(source, backend, statements.size());
+        }
+    }
+
+    /**
+     * Lexes, parses and runs the script one top level statement at a time,
+     * so neither the source nor its tokens ever have to be in memory all at
+     * once. Unlike {@link #runFile(Path)} statements run as soon as they're
+     * parsed: a syntax error further down the file doesn't stop the ones
+     * before it, though nothing runs after the first error.
+     */
+    private static void runStream(Path path) {
+        try (var reader = Files.newBufferedReader(path)) {
+            var parser = new Parser(new StreamingLexer(reader, symbols));
+            var optimizer = optimize ? new Optimizer() : null;
+            for (Statement statement = parser.next(); statement != null; statement = parser.next()) {
+                if (hasError) {
+                    continue;
+                }
+
+                List<Statement> statements = List.of(statement);
+                if (optimizer != null) {
+                    statements = optimizer.optimize(statements);
+                }
+
+                statements = resolver.resolve(statements);
+                if (!hasError) {
+                    execute(backend == Backend.TREE ? new ScopeFlattener().flatten(statements) : statements);
+                }
+            }
+
+            if (optimizer != null) {
+                System.err.println(optimizer.report());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (hasError) {
+            exit(65);
         }
     }
 
+    private static void execute(Collection<Statement> statements) {
+        switch (backend) {
+            case TREE -> {
+                for (Statement statement : statements) {
+                    interpreter.interpret(statement);
+                }
+            }
+            case VM -> {
+                Chunk chunk = new BytecodeCompiler().compile(statements);
+                if (hasError) {
+                    return;
+                }
+
+                vm.run(chunk);
+            }
+            case AST -> nodeInterpreter.interpret(statements);
+            case JVM -> jvmInterpreter.interpret(statements);
+        }
+    }
+
+    private static void exit(int status) {
+        out.flush();
+        System.exit(status);
+    }
+
+    static boolean hadError() {
+        return hasError;
+    }
+
+    static void clearError() {
+        hasError = false;
+    }
+
     public static void error(int line, String message) {
         report(line, "", message);
     }
 
     private static void report(int line, String where, String message) {
+        // keep errors in order with what has been printed before them
+        out.flush();
         System.err.println("[line " + line + "] Error " + where + ": " + message);
         hasError = true;
     }
 
     private static void runPrompt() {
+        out.flushOn(OutputSink.Flush.LINE);
         var input = new InputStreamReader(System.in);
         var reader = new BufferedReader(input);
 
@@ -83,7 +347,8 @@ public class Main {
                 break;
             }
 
-            run(line);
+            run(line, "stdin", null);
+            hasError = false;
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.github.gdoenlen.lox;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Hooks the interpreter into JFR and JMX. Neither is set up unless it's
+ * asked for: starting JFR or the platform MBean server costs more than a
+ * small script takes to run.
+ *
+ * The JFR events are only created while JFR is running, started with
+ * {@code -XX:StartFlightRecording} or {@code jcmd}, see {@link #recording()}.
+ * The {@link InterpreterMXBean} is registered with {@code -Dlox.jmx=true}.
+ */
+final class Monitoring {
+    static final String OBJECT_NAME = "com.github.gdoenlen.lox:type=Interpreter";
+
+    private static Interpreter watched = null;
+    private static boolean periodic = false;
+
+    private Monitoring() {}
+
+    /**
+     * Makes {@code interpreter}'s counters the ones JFR and JMX report.
+     */
+    static void watch(Interpreter interpreter) {
+        watched = interpreter;
+        if (Boolean.getBoolean("lox.jmx")) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(interpreter, new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Whether JFR is running, and so whether to create the phase events.
+     * The first time it is the periodic {@link CountersEvent} is set up.
+     */
+    static boolean recording() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+
+        if (!periodic && watched != null) {
+            periodic = true;
+            Interpreter interpreter = watched;
+            FlightRecorder.addPeriodicEvent(CountersEvent.class, () -> {
+                var event = new CountersEvent();
+                event.statementsExecuted = interpreter.getStatementsExecuted();
+                event.environmentsCreated = interpreter.getEnvironmentsCreated();
+                event.variableLookups = interpreter.getVariableLookups();
+                event.stringConcatenations = interpreter.getStringConcatenations();
+                event.commit();
+            });
+        }
+
+        return true;
+    }
+}
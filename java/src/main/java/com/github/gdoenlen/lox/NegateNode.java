@@ -0,0 +1,38 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Unary {@code -}. Only numbers can be negated so there is nothing to
+ * specialize on, the unboxed path is always tried first.
+ */
+final class NegateNode extends ExprNode {
+    private ExprNode operand;
+
+    NegateNode(ExprNode operand) {
+        this.operand = this.adopt(operand);
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        return this.negate(frame);
+    }
+
+    @Override
+    double executeDouble(NodeFrame frame) {
+        return this.negate(frame);
+    }
+
+    private double negate(NodeFrame frame) {
+        try {
+            return -this.operand.executeDouble(frame);
+        } catch (UnexpectedResultException ex) {
+            return -(Double) ex.result();
+        }
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.operand == oldChild) {
+            this.operand = (ExprNode) newChild;
+        }
+    }
+}
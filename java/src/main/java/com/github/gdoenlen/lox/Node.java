@@ -0,0 +1,31 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Base of the executable tree built by the {@link NodeBuilder}.
+ *
+ * Nodes specialize themselves on the values they observe by swapping a
+ * new node into their parent with {@link #replace(Node)}, so every node
+ * keeps a pointer to its parent and every parent knows how to swap its children.
+ */
+abstract class Node {
+    private Node parent;
+
+    final <T extends Node> T adopt(T child) {
+        Node node = child;
+        node.parent = this;
+
+        return child;
+    }
+
+    final <T extends Node> T replace(T replacement) {
+        Node node = replacement;
+        this.parent.replaceChild(this, node);
+        node.parent = this.parent;
+
+        return replacement;
+    }
+
+    void replaceChild(Node oldChild, Node newChild) {
+        throw new IllegalStateException(this.getClass().getSimpleName() + " has no children to replace");
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Turns resolved statements into the self specializing {@link Node} tree.
+ *
+ * Blocks that declare nothing don't get a {@link NodeFrame} of their own,
+ * so the resolver's depths are recounted over the blocks that do.
+ */
+class NodeBuilder {
+    private final Environment globals;
+    private final OutputSink out;
+    private final List<Boolean> framed = new ArrayList<>();
+
+    NodeBuilder(Environment globals, OutputSink out) {
+        this.globals = globals;
+        this.out = out;
+    }
+
+    StatementNode[] build(Collection<Statement> statements) {
+        var nodes = new StatementNode[statements.size()];
+        int i = 0;
+        for (Statement statement : statements) {
+            nodes[i++] = this.build(statement);
+        }
+
+        return nodes;
+    }
+
+    @SuppressWarnings("unused")
+    private StatementNode build(Statement statement) {
+        return switch (statement) {
+            case Block b -> {
+                this.framed.add(b.slots() > 0);
+                try {
+                    yield new BlockNode(b.slots(), this.build(b.statements()));
+                } finally {
+                    this.framed.remove(this.framed.size() - 1);
+                }
+            }
+            case Conditional c -> new IfNode(
+                this.build(c.condition()),
+                this.build(c.thenBranch()),
+                c.elseBranch() instanceof NullStatement ? null : this.build(c.elseBranch())
+            );
+            case Expression e -> new ExpressionNode(this.build(e.expr()));
+            case NullStatement ns -> new BlockNode(0, new StatementNode[0]);
+            case Print p -> new PrintNode(this.out, this.build(p.value()));
+            case Var v -> new ExpressionNode(
+                v.isGlobal()
+                    ? new GlobalWriteNode(this.globals, v.token(), this.build(v.initializer()), true)
+                    : LocalWriteNode.create(0, v.slot(), this.build(v.initializer()))
+            );
+            case While w -> new WhileNode(this.build(w.condition()), this.build(w.body()));
+        };
+    }
+
+    @SuppressWarnings("unused")
+    private ExprNode build(Expr expr) {
+        return switch (expr) {
+            case Assign a -> a.isGlobal()
+                ? new GlobalWriteNode(this.globals, a.token(), this.build(a.value()), false)
+                : LocalWriteNode.create(this.depth(a.depth()), a.slot(), this.build(a.value()));
+            case Binary b -> switch (b.tokenType()) {
+                case MINUS, PLUS, SLASH, STAR -> ArithmeticNode.create(
+                    b.tokenType(),
+                    this.build(b.left()),
+                    this.build(b.right())
+                );
+                default -> ComparisonNode.create(b.tokenType(), this.build(b.left()), this.build(b.right()));
+            };
+            case Grouping g -> this.build(g.expr());
+            case Literal l -> new ConstantNode(l.value());
+            case Logical l -> new LogicalNode(l.isOr(), this.build(l.left()), this.build(l.right()));
+            case NullExpr n -> new ConstantNode(null);
+            case Unary u -> switch (u.tokenType()) {
+                case BANG -> new NotNode(this.build(u.right()));
+                case MINUS -> new NegateNode(this.build(u.right()));
+                default -> throw new IllegalArgumentException(u.tokenType().toString());
+            };
+            case Variable v -> v.isGlobal()
+                ? new GlobalReadNode(this.globals, v.token())
+                : new LocalReadNode(this.depth(v.depth()), v.slot());
+        };
+    }
+
+    /**
+     * The number of frames to walk up for a variable the resolver put
+     * {@code depth} blocks out.
+     */
+    private int depth(int depth) {
+        int frames = 0;
+        for (int i = this.framed.size() - depth; i < this.framed.size(); i++) {
+            if (Boolean.TRUE.equals(this.framed.get(i))) {
+                frames++;
+            }
+        }
+
+        return frames;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Locals of a block for the node backend. Numbers are kept unboxed in
+ * {@code doubles}, the matching entry in {@code objects} is then {@link #DOUBLE}.
+ */
+final class NodeFrame {
+    private static final Object DOUBLE = new Object();
+
+    private final Object[] objects;
+    private final double[] doubles;
+    private final NodeFrame enclosing;
+
+    NodeFrame(int size, NodeFrame enclosing) {
+        this.objects = new Object[size];
+        this.doubles = new double[size];
+        this.enclosing = enclosing;
+    }
+
+    NodeFrame ancestor(int depth) {
+        NodeFrame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.enclosing;
+        }
+
+        return frame;
+    }
+
+    Object get(int slot) {
+        Object value = this.objects[slot];
+        if (value == DOUBLE) {
+            return this.doubles[slot];
+        }
+
+        return value;
+    }
+
+    double getDouble(int slot) throws UnexpectedResultException {
+        Object value = this.objects[slot];
+        if (value == DOUBLE) {
+            return this.doubles[slot];
+        }
+
+        if (value instanceof Double d) {
+            return d;
+        }
+
+        throw new UnexpectedResultException(value);
+    }
+
+    void set(int slot, Object value) {
+        this.objects[slot] = value;
+    }
+
+    void setDouble(int slot, double value) {
+        this.objects[slot] = DOUBLE;
+        this.doubles[slot] = value;
+    }
+}
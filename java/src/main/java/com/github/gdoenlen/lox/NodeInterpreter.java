@@ -0,0 +1,26 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Collection;
+
+/**
+ * Runs programs on the self specializing {@link Node} tree, numeric code
+ * runs on unboxed doubles once its nodes have specialized.
+ */
+class NodeInterpreter {
+    private final Environment globals = new Environment();
+    private final OutputSink out;
+
+    NodeInterpreter() {
+        this(OutputSink.stdout());
+    }
+
+    NodeInterpreter(OutputSink out) {
+        this.out = out;
+    }
+
+    void interpret(Collection<Statement> statements) {
+        for (StatementNode node : new NodeBuilder(this.globals, this.out).build(statements)) {
+            node.execute(null);
+        }
+    }
+}
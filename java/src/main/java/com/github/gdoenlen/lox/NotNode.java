@@ -0,0 +1,26 @@
+package com.github.gdoenlen.lox;
+
+final class NotNode extends ExprNode {
+    private ExprNode operand;
+
+    NotNode(ExprNode operand) {
+        this.operand = this.adopt(operand);
+    }
+
+    @Override
+    Object execute(NodeFrame frame) {
+        return this.executeTruthy(frame);
+    }
+
+    @Override
+    boolean executeTruthy(NodeFrame frame) {
+        return !this.operand.executeTruthy(frame);
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.operand == oldChild) {
+            this.operand = (ExprNode) newChild;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Instruction set of the {@link VirtualMachine}. Operands follow the opcode
+ * inline in the {@link Chunk}: constant, global and local indexes are
+ * unsigned 16 bit, jump targets are absolute 32 bit offsets.
+ *
+ * These are plain {@code byte} constants rather than an enum so the
+ * dispatch loop can switch on the code array directly.
+ */
+final class OpCode {
+    private OpCode() {}
+
+    /** {@code [u16 constant]} pushes a constant. */
+    static final byte CONSTANT = 0;
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+
+    /** {@code [u16 local]} pushes a local. */
+    static final byte GET_LOCAL = 5;
+    /** {@code [u16 local]} stores the top of the stack into a local, leaving it on the stack. */
+    static final byte SET_LOCAL = 6;
+    /** {@code [u16 local]} pops the top of the stack into a local. */
+    static final byte STORE_LOCAL = 7;
+    /** {@code [u16 constant]} pushes the global named by the token constant. */
+    static final byte GET_GLOBAL = 8;
+    /** {@code [u16 constant]} assigns the global named by the token constant, leaving the value on the stack. */
+    static final byte SET_GLOBAL = 9;
+    /** {@code [u16 constant]} pops the top of the stack into a new global. */
+    static final byte DEFINE_GLOBAL = 10;
+
+    static final byte EQUAL = 11;
+    static final byte NOT_EQUAL = 12;
+    static final byte GREATER = 13;
+    static final byte GREATER_EQUAL = 14;
+    static final byte LESS = 15;
+    static final byte LESS_EQUAL = 16;
+    static final byte ADD = 17;
+    static final byte SUBTRACT = 18;
+    static final byte MULTIPLY = 19;
+    static final byte DIVIDE = 20;
+    static final byte NOT = 21;
+    static final byte NEGATE = 22;
+
+    static final byte PRINT = 23;
+
+    /** {@code [u32 target]} */
+    static final byte JUMP = 24;
+    /** {@code [u32 target]} pops the condition and jumps when it is falsey. */
+    static final byte JUMP_IF_FALSE = 25;
+    /** {@code [u32 target]} jumps keeping the operand when it is falsey, otherwise pops it. */
+    static final byte JUMP_IF_FALSE_OR_POP = 26;
+    /** {@code [u32 target]} jumps keeping the operand when it is truthy, otherwise pops it. */
+    static final byte JUMP_IF_TRUE_OR_POP = 27;
+
+    static final byte RETURN = 28;
+}
@@ -0,0 +1,19 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * An operator applied to operands it doesn't take, like {@code -"a"} or
+ * {@code nil + 1}, with the operator's token for where it happened.
+ */
+class OperandTypeException extends RuntimeException {
+    private final Token token;
+
+    OperandTypeException(Token token, String message) {
+        super(message);
+
+        this.token = token;
+    }
+
+    Token getToken() {
+        return this.token;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Objects;
+
+/**
+ * Lox semantics for truthiness, {@code +} and printing shared by every
+ * execution backend so they can't drift apart.
+ */
+final class Operators {
+    private static final String PLUS_OPERANDS = "Operands must be two numbers or include a string.";
+
+    private Operators() {}
+
+    static boolean isTruthy(Object o) {
+        if (o instanceof Boolean b) {
+            return b;
+        }
+
+        return o != null;
+    }
+
+    /**
+     * {@link Objects#equals(Object, Object)}, except that strings compare
+     * by their characters whether they are a {@link String} or a {@link Rope},
+     * which {@link Rope#equals(Object)} doesn't do across the two.
+     */
+    static boolean isEqual(Object left, Object right) {
+        if (left instanceof Rope || right instanceof Rope) {
+            return left instanceof CharSequence l && right instanceof CharSequence r
+                && l.length() == r.length() && l.toString().equals(r.toString());
+        }
+
+        return Objects.equals(left, right);
+    }
+
+    /**
+     * Strings concatenate into a {@link Rope}, see there.
+     *
+     * @throws OperandTypeException if neither operand is a string and they
+     *                              aren't both numbers
+     */
+    static Object plus(Token operator, Object left, Object right) {
+        Object sum = sum(left, right);
+        if (sum == null) {
+            throw new OperandTypeException(operator, PLUS_OPERANDS);
+        }
+
+        return sum;
+    }
+
+    /**
+     * {@link #plus(Token, Object, Object)} for the backends that don't keep
+     * the operator's token around.
+     *
+     * @throws ClassCastException instead, like the casts of their other operators
+     */
+    static Object plus(Object left, Object right) {
+        Object sum = sum(left, right);
+        if (sum == null) {
+            throw new ClassCastException(PLUS_OPERANDS);
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return {@code null} if the operands don't add up
+     */
+    private static Object sum(Object left, Object right) {
+        if (left instanceof CharSequence l) {
+            return Rope.concat(l, asString(right));
+        }
+
+        if (right instanceof CharSequence r) {
+            return Rope.concat(r, asString(left));
+        }
+
+        if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        }
+
+        return null;
+    }
+
+    static String stringify(Object o) {
+        return Objects.toString(o, "nil");
+    }
+
+    /**
+     * What {@code String + Object} appends, without flattening a {@link Rope}.
+     */
+    private static CharSequence asString(Object o) {
+        return o instanceof CharSequence s ? s : String.valueOf(o);
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.github.gdoenlen.lox.Operators.isTruthy;
+
+/**
+ * Simplifies parsed, not yet resolved, statements:
+ *
+ * - folds arithmetic, comparisons, string concatenation, unary operators
+ *   and logical operators whose operands are constants
+ * - replaces conditionals with a constant condition by the branch taken
+ * - drops loops whose condition is constantly falsey
+ * - drops {@link NullStatement}s, constant expression statements such as
+ *   the {@link NullExpr} increment of a {@code for} without one, and
+ *   blocks left with nothing in them
+ *
+ * Expressions that would fail at runtime, e.g. {@code -"a"}, are left alone
+ * so the error still happens when, and if, they run.
+ */
+class Optimizer {
+    private int folded = 0;
+    private int branches = 0;
+    private int loops = 0;
+    private int statements = 0;
+
+    List<Statement> optimize(Collection<Statement> program) {
+        var optimized = new ArrayList<Statement>(program.size());
+        for (Statement statement : program) {
+            this.add(optimized, statement);
+        }
+
+        return optimized;
+    }
+
+    String report() {
+        return String.format(
+            "Optimizer: folded %d constant expressions, pruned %d branches, removed %d loops and %d no-op statements",
+            this.folded,
+            this.branches,
+            this.loops,
+            this.statements
+        );
+    }
+
+    @SuppressWarnings("unused")
+    private Statement optimize(Statement statement) {
+        return switch (statement) {
+            case Block b -> this.block(b);
+            case Conditional c -> {
+                Expr condition = this.optimize(c.condition());
+                if (isConstant(condition)) {
+                    this.branches++;
+
+                    yield this.optimize(isTruthy(valueOf(condition)) ? c.thenBranch() : c.elseBranch());
+                }
+
+                yield new Conditional(condition, this.optimize(c.thenBranch()), this.optimize(c.elseBranch()));
+            }
+            case Expression e -> {
+                Expr expr = this.optimize(e.expr());
+                if (isConstant(expr)) {
+                    this.statements++;
+
+                    yield NullStatement.instance();
+                }
+
+                yield new Expression(expr);
+            }
+            case NullStatement ns -> ns;
+            case Print p -> new Print(this.optimize(p.value()));
+            case Var v -> new Var(v.token(), this.optimize(v.initializer()));
+            case While w -> {
+                Expr condition = this.optimize(w.condition());
+                if (isConstant(condition) && !isTruthy(valueOf(condition))) {
+                    this.loops++;
+
+                    yield NullStatement.instance();
+                }
+
+                yield new While(condition, this.optimize(w.body()));
+            }
+        };
+    }
+
+    private void add(List<Statement> body, Statement statement) {
+        if (statement instanceof NullStatement) {
+            this.statements++;
+
+            return;
+        }
+
+        Statement optimized = this.optimize(statement);
+        if (!(optimized instanceof NullStatement)) {
+            body.add(optimized);
+        }
+    }
+
+    /**
+     * A block that ends up holding a single statement which isn't a
+     * declaration doesn't need its own scope and is replaced by that statement.
+     */
+    private Statement block(Block b) {
+        var body = new ArrayList<Statement>(b.statements().size());
+        for (Statement statement : b.statements()) {
+            this.add(body, statement);
+        }
+
+        if (body.isEmpty()) {
+            this.statements++;
+
+            return NullStatement.instance();
+        }
+
+        if (body.size() == 1 && !(body.get(0) instanceof Var)) {
+            return body.get(0);
+        }
+
+        return new Block(body);
+    }
+
+    @SuppressWarnings("unused")
+    private Expr optimize(Expr expr) {
+        return switch (expr) {
+            case Assign a -> new Assign(a.token(), this.optimize(a.value()));
+            case Binary b -> this.binary(b);
+            case Grouping g -> this.optimize(g.expr());
+            case Literal l -> l;
+            case Logical l -> {
+                Expr left = this.optimize(l.left());
+                Expr right = this.optimize(l.right());
+                if (!isConstant(left)) {
+                    yield new Logical(left, l.operator(), right);
+                }
+
+                this.folded++;
+                boolean truthy = isTruthy(valueOf(left));
+
+                yield l.isOr() == truthy ? left : right;
+            }
+            case NullExpr n -> n;
+            case Unary u -> {
+                Expr right = this.optimize(u.right());
+                if (!isConstant(right)) {
+                    yield new Unary(u.operator(), right);
+                }
+
+                Object value = valueOf(right);
+                if (u.tokenType() == TokenType.BANG) {
+                    yield this.fold(!isTruthy(value));
+                }
+
+                if (u.tokenType() == TokenType.MINUS && value instanceof Double d) {
+                    yield this.fold(-d);
+                }
+
+                yield new Unary(u.operator(), right);
+            }
+            case Variable v -> v;
+        };
+    }
+
+    private Expr binary(Binary b) {
+        Expr left = this.optimize(b.left());
+        Expr right = this.optimize(b.right());
+        if (!isConstant(left) || !isConstant(right)) {
+            return new Binary(left, b.operator(), right);
+        }
+
+        Object l = valueOf(left);
+        Object r = valueOf(right);
+        TokenType type = b.tokenType();
+        switch (type) {
+            case BANG_EQUAL -> {
+                return this.fold(!Operators.isEqual(l, r));
+            }
+            case EQUAL_EQUAL -> {
+                return this.fold(Operators.isEqual(l, r));
+            }
+            case PLUS -> {
+                if (l instanceof String || r instanceof String) {
+                    return this.fold(Operators.plus(b.operator(), l, r).toString());
+                }
+
+                if (l instanceof Double && r instanceof Double) {
+                    return this.fold(Operators.plus(b.operator(), l, r));
+                }
+            }
+            default -> {
+                if (l instanceof Double x && r instanceof Double y) {
+                    return this.fold(arithmetic(type, x, y));
+                }
+            }
+        }
+
+        return new Binary(left, b.operator(), right);
+    }
+
+    private static Object arithmetic(TokenType type, double left, double right) {
+        return switch (type) {
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            case MINUS -> left - right;
+            case SLASH -> left / right;
+            case STAR -> left * right;
+            default -> throw new IllegalArgumentException(type.toString());
+        };
+    }
+
+    private Expr fold(Object value) {
+        this.folded++;
+
+        return value == null ? NullExpr.instance() : new Literal(value);
+    }
+
+    private static boolean isConstant(Expr expr) {
+        return expr instanceof Literal || expr instanceof NullExpr;
+    }
+
+    private static Object valueOf(Expr expr) {
+        return expr instanceof Literal l ? l.value() : null;
+    }
+}
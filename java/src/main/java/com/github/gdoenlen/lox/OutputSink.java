@@ -0,0 +1,183 @@
+package com.github.gdoenlen.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Where {@code print} writes to. Values are encoded as UTF-8 straight into
+ * a byte buffer that is written out in one go, without the locking and the
+ * per line encoding and flushing of {@link System#out}.
+ *
+ * When the buffer is written out depends on the {@link Flush} policy, it
+ * always is when full and on {@link #flush()}, which whoever owns the sink
+ * has to call before exiting, {@link Main} also does from a shutdown hook
+ * for {@link #stdout()} so an interrupted script's output isn't lost.
+ */
+final class OutputSink implements Flushable {
+    static final int DEFAULT_SIZE = 64 * 1024;
+
+    enum Flush {
+        /** After every print, for the REPL. */
+        LINE,
+        /** Only when the buffer is full, or when asked to. */
+        FULL
+    }
+
+    private static final OutputSink STDOUT = new OutputSink(new FileOutputStream(FileDescriptor.out), DEFAULT_SIZE, Flush.FULL);
+    private static final byte[] NIL = { 'n', 'i', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position = 0;
+    private Flush flush;
+
+    OutputSink(OutputStream out, int size, Flush flush) {
+        // room for the longest double and the longest encoded char
+        this.buffer = new byte[Math.max(size, 32)];
+        this.out = out;
+        this.flush = flush;
+    }
+
+    /**
+     * The process' standard output, shared by every interpreter that isn't given a sink.
+     */
+    static OutputSink stdout() {
+        return STDOUT;
+    }
+
+    void flushOn(Flush flush) {
+        this.flush = flush;
+    }
+
+    /**
+     * Writes the value the way {@link Operators#stringify(Object)} would, and a newline.
+     */
+    void print(Object value) {
+        switch (value) {
+            case null -> this.write(NIL);
+            case Double d -> this.write(d);
+            case Boolean b -> this.write(b ? TRUE : FALSE);
+            case CharSequence s -> this.write(s.toString());
+            default -> this.write(Operators.stringify(value));
+        }
+
+        this.newline();
+    }
+
+    /**
+     * {@link #print(Object)} of a number, without boxing it.
+     */
+    void print(double value) {
+        this.write(value);
+        this.newline();
+    }
+
+    private void newline() {
+        this.ensure(1);
+        this.buffer[this.position++] = '\n';
+        if (this.flush == Flush.LINE) {
+            this.flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            this.out.write(this.buffer, 0, this.position);
+            this.out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            this.position = 0;
+        }
+    }
+
+    private void write(byte[] bytes) {
+        this.ensure(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    /**
+     * Same output as {@link Double#toString(double)}. Whole numbers below
+     * 10^7, which is what most scripts print, are written digit by digit,
+     * everything else, fractions and the exponent notation, is left to it.
+     */
+    private void write(double value) {
+        long whole = (long) value;
+        if (whole != value || Math.abs(whole) >= 10_000_000 || Double.doubleToRawLongBits(value) == NEGATIVE_ZERO) {
+            this.write(Double.toString(value));
+
+            return;
+        }
+
+        this.ensure(11);
+        if (whole < 0) {
+            this.buffer[this.position++] = '-';
+            whole = -whole;
+        }
+
+        int digits = 1;
+        for (long rest = whole / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+
+        for (int i = this.position + digits - 1; i >= this.position; i--) {
+            this.buffer[i] = (byte) ('0' + whole % 10);
+            whole /= 10;
+        }
+
+        this.position += digits;
+        this.buffer[this.position++] = '.';
+        this.buffer[this.position++] = '0';
+    }
+
+    /**
+     * UTF-8, with lone surrogates replaced by {@code '?'} like {@link String#getBytes} does.
+     */
+    private void write(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (this.position == this.buffer.length) {
+                    this.flush();
+                }
+
+                this.buffer[this.position++] = (byte) c;
+            } else if (c < 0x800) {
+                this.ensure(2);
+                this.buffer[this.position++] = (byte) (0xC0 | (c >> 6));
+                this.buffer[this.position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                this.ensure(4);
+                this.buffer[this.position++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[this.position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                this.ensure(1);
+                this.buffer[this.position++] = '?';
+            } else {
+                this.ensure(3);
+                this.buffer[this.position++] = (byte) (0xE0 | (c >> 12));
+                this.buffer[this.position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.buffer[this.position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (this.position + bytes > this.buffer.length) {
+            this.flush();
+        }
+    }
+}
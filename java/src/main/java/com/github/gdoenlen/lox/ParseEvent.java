@@ -0,0 +1,37 @@
+package com.github.gdoenlen.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Parsing and resolving a whole program, begins when created. Only create
+ * it when {@link Monitoring#recording()}, loading the class starts up JFR.
+ */
+@Name("com.github.gdoenlen.lox.Parse")
+@Label("Parse")
+@Category("Lox")
+@Description("Parsing tokens into statements and resolving their variables")
+final class ParseEvent extends jdk.jfr.Event {
+    @Label("Source")
+    String source;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Statements")
+    @Description("Top level statements")
+    int statements;
+
+    ParseEvent() {
+        this.begin();
+    }
+
+    void commit(String source, int tokens, int statements) {
+        this.source = source;
+        this.tokens = tokens;
+        this.statements = statements;
+        this.commit();
+    }
+}
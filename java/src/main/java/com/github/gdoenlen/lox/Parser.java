@@ -1,7 +1,9 @@
 package com.github.gdoenlen.lox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -36,135 +38,219 @@ import static com.github.gdoenlen.lox.TokenType.*;
  * logic_and -> equality ( "and" equality )* ;
  */
 class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
-
-    Parser(List<Token> tokens) {
-        this.tokens = tokens;
+    /**
+     * Binding powers, of what's on the operator stack and of the infix
+     * operators, the grammar's levels from assignment up.
+     */
+    private static final int NONE = -1;
+    private static final int GROUPING = 0;
+    private static final int ASSIGNMENT = 1;
+    private static final int UNARY = 8;
+
+    /**
+     * The tables driving {@link #expression()}, by {@link TokenType#ordinal()}:
+     * what a token starting an operand parses to, if it's an atom, the power
+     * it's pushed with if it's a prefix operator or an opening parenthesis,
+     * and as an infix operator what it builds, the power it takes its left
+     * operand with, and the power it's pushed with to wait for its right.
+     * The left associative operators take their left operand with the power
+     * they wait with, so one takes the one before it as its left operand,
+     * assignment takes it one higher, so it waits for the ones after it.
+     */
+    private static final Atom[] ATOMS = new Atom[TokenType.values().length];
+    private static final int[] PREFIX_POWER = new int[TokenType.values().length];
+    private static final Infix[] INFIX = new Infix[TokenType.values().length];
+    private static final int[] LEFT_POWER = new int[TokenType.values().length];
+    private static final int[] RIGHT_POWER = new int[TokenType.values().length];
+
+    static {
+        var atoms = new EnumMap<TokenType, Atom>(TokenType.class);
+        Literal no = new Literal(Boolean.FALSE);
+        Literal yes = new Literal(Boolean.TRUE);
+        atoms.put(FALSE, token -> no);
+        atoms.put(TRUE, token -> yes);
+        atoms.put(NIL, token -> NullExpr.instance());
+        atoms.put(NUMBER, token -> new Literal(token.literal()));
+        atoms.put(STRING, token -> new Literal(token.literal()));
+        atoms.put(IDENTIFIER, Variable::new);
+        atoms.forEach((type, atom) -> ATOMS[type.ordinal()] = atom);
+
+        Arrays.fill(PREFIX_POWER, NONE);
+        PREFIX_POWER[BANG.ordinal()] = UNARY;
+        PREFIX_POWER[MINUS.ordinal()] = UNARY;
+        PREFIX_POWER[LEFT_PAREN.ordinal()] = GROUPING;
+
+        Arrays.fill(LEFT_POWER, NONE);
+        Infix binary = (parser, left, operator, right) -> new Binary(left, operator, right);
+        Infix logical = (parser, left, operator, right) -> new Logical(left, operator, right);
+        infix(ASSIGNMENT + 1, ASSIGNMENT, Parser::assign, EQUAL);
+        infix(2, 2, logical, OR);
+        infix(3, 3, logical, AND);
+        infix(4, 4, binary, BANG_EQUAL, EQUAL_EQUAL);
+        infix(5, 5, binary, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
+        infix(6, 6, binary, MINUS, PLUS);
+        infix(7, 7, binary, SLASH, STAR);
     }
 
-    private Expr expression() {
-        return this.assignment();
+    private static void infix(int left, int right, Infix infix, TokenType... types) {
+        for (TokenType type : types) {
+            INFIX[type.ordinal()] = infix;
+            LEFT_POWER[type.ordinal()] = left;
+            RIGHT_POWER[type.ordinal()] = right;
+        }
     }
 
-    private Expr assignment() {
-        Expr expr = this.or();
-
-        if (this.match(EQUAL)) {
-            Token equals = this.previous();
-            Expr value = this.assignment();
-
-            if (expr instanceof Variable v) {
-                Token t = v.token();
-
-                return new Assign(t, value);
-            }
-
-            throw error(equals, "Invalid assignment target.");
-        }
+    @FunctionalInterface
+    private interface Atom {
+        Expr parse(Token token);
+    }
 
-        return expr;
+    @FunctionalInterface
+    private interface Infix {
+        Expr build(Parser parser, Expr left, Token operator, Expr right);
     }
 
-    private Expr or() {
-        Expr expr = this.and();
-        while(this.match(OR)) {
-            Token operator = this.previous();
-            Expr right = this.and();
-            expr = new Logical(expr, operator, right);
+    /**
+     * A statement started but waiting for the statement in it, or for a
+     * block, the next one or its end, by the token that started it.
+     */
+    private static final class Open {
+        private final TokenType type;
+        private final Expr condition;
+        private final ArrayList<Statement> statements = new ArrayList<>();
+        private Statement thenBranch;
+        private Statement initializer;
+        private Expr increment;
+
+        private Open(TokenType type, Expr condition) {
+            this.type = type;
+            this.condition = condition;
         }
-
-        return expr;
     }
 
-    private Expr and() {
-        Expr expr = this.equality();
-        while (this.match(AND)) {
-            Token operator = this.previous();
-            Expr right = this.equality();
-            expr = new Logical(expr, operator, right);
-        }
+    private final TokenStream tokens;
+    private final ErrorReporter errors;
+    private int current = 0;
+    private Expr[] operands = new Expr[16];
+    private int operandCount = 0;
+    private Token[] operators = new Token[16];
+    private int[] powers = new int[16];
+    private int operatorCount = 0;
+    private final ArrayList<Open> open = new ArrayList<>();
 
-        return expr;
+    Parser(List<Token> tokens) {
+        this(new TokenList(tokens));
     }
 
-    private Expr equality() {
-        Expr expr = this.comparison();
-
-        while (this.match(BANG_EQUAL, EQUAL_EQUAL)) {
-            expr = new Binary(expr, this.previous(), this.comparison());
-        }
+    Parser(TokenStream tokens) {
+        this(tokens, Main::error);
+    }
 
-        return expr;
+    Parser(TokenStream tokens, ErrorReporter errors) {
+        this.tokens = tokens;
+        this.errors = errors;
     }
 
-    private Expr comparison() {
-        Expr expr = this.term();
+    /**
+     * Parses an expression Pratt style, off the tables above, with stacks of
+     * the operands and of the operators, groupings and prefix operators
+     * still waiting for theirs, instead of recursing, so how deeply an
+     * expression nests is limited by the heap and not the thread's stack.
+     * It builds the same trees the grammar describes.
+     */
+    private Expr expression() {
+        this.operandCount = 0;
+        this.operatorCount = 0;
+        for (;;) {
+            int type = this.tokens.type(this.current).ordinal();
+            while (PREFIX_POWER[type] != NONE) {
+                this.pushOperator(this.advance(), PREFIX_POWER[type]);
+                type = this.tokens.type(this.current).ordinal();
+            }
+
+            Atom atom = ATOMS[type];
+            if (atom == null) {
+                throw this.error(this.peek(), "Expect expression.");
+            }
 
-        while (this.match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            expr = new Binary(expr, this.previous(), this.term());
+            Expr operand = atom.parse(this.advance());
+            for (;;) {
+                while (this.operatorCount > 0 && this.powers[this.operatorCount - 1] == UNARY) {
+                    operand = new Unary(this.popOperator(), operand);
+                }
+
+                type = this.tokens.type(this.current).ordinal();
+                if (LEFT_POWER[type] != NONE) {
+                    this.pushOperand(this.reduce(operand, LEFT_POWER[type]));
+                    this.pushOperator(this.advance(), RIGHT_POWER[type]);
+                    break;
+                }
+
+                operand = this.reduce(operand, ASSIGNMENT);
+                if (this.operatorCount == 0) {
+                    return operand;
+                }
+
+                // a grouping is all that's left on top
+                this.consume(RIGHT_PAREN, "Expect right parens");
+                this.popOperator();
+                operand = new Grouping(operand);
+            }
         }
-
-        return expr;
     }
 
-    private Expr term() {
-        Expr expr = this.factor();
-
-        while(this.match(MINUS, PLUS)) {
-            expr = new Binary(expr, this.previous(), this.factor());
+    /**
+     * Applies the operators waiting on the stack that bind at least as
+     * tightly as {@code power}, with {@code right} as the right operand of
+     * the last.
+     */
+    private Expr reduce(Expr right, int power) {
+        while (this.operatorCount > 0 && this.powers[this.operatorCount - 1] >= power) {
+            Token operator = this.popOperator();
+            right = INFIX[operator.tokenType().ordinal()].build(this, this.popOperand(), operator, right);
         }
 
-        return expr;
+        return right;
     }
 
-    private Expr factor() {
-        Expr expr = this.unary();
-
-        while (this.match(SLASH, STAR)) {
-            expr = new Binary(expr, this.previous(), this.unary());
+    private Expr assign(Expr target, Token equals, Expr value) {
+        if (target instanceof Variable v) {
+            return new Assign(v.token(), value);
         }
 
-        return expr;
+        throw this.error(equals, "Invalid assignment target.");
     }
 
-    private Expr unary() {
-        if (this.match(BANG, MINUS)) {
-            return new Unary(this.previous(), this.unary());
+    private void pushOperand(Expr operand) {
+        if (this.operandCount == this.operands.length) {
+            this.operands = Arrays.copyOf(this.operands, this.operandCount * 2);
         }
 
-        return this.primary();
+        this.operands[this.operandCount++] = operand;
     }
 
-    private Expr primary() {
-        if (this.match(FALSE)) {
-            return new Literal(Boolean.FALSE);
-        }
-
-        if (this.match(TRUE)) {
-            return new Literal(Boolean.TRUE);
-        }
+    private Expr popOperand() {
+        Expr operand = this.operands[--this.operandCount];
+        this.operands[this.operandCount] = null;
 
-        if (this.match(NIL)) {
-            return NullExpr.instance();
-        }
+        return operand;
+    }
 
-        if (this.match(NUMBER, STRING)) {
-            return new Literal(this.previous().literal());
+    private void pushOperator(Token operator, int power) {
+        if (this.operatorCount == this.operators.length) {
+            this.operators = Arrays.copyOf(this.operators, this.operatorCount * 2);
+            this.powers = Arrays.copyOf(this.powers, this.operatorCount * 2);
         }
 
-        if (this.match(LEFT_PAREN)) {
-            Expr expr = this.expression();
-            this.consume(RIGHT_PAREN, "Expect right parens");
-
-            return new Grouping(expr);
-        }
+        this.operators[this.operatorCount] = operator;
+        this.powers[this.operatorCount++] = power;
+    }
 
-        if (this.match(IDENTIFIER)) {
-            return new Variable(this.previous());
-        }
+    private Token popOperator() {
+        Token operator = this.operators[--this.operatorCount];
+        this.operators[this.operatorCount] = null;
 
-        throw new RuntimeException("todo");
+        return operator;
     }
 
     private Token consume(TokenType type, String message) {
@@ -176,19 +262,17 @@ class Parser {
     }
 
     private ParseException error(Token token, String message) {
-        Main.error(-1, message);
+        this.errors.error(token.line(), message);
 
         return new ParseException();
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (this.check(type)) {
-                // todo can we get out of this side effect here?
-                this.advance();
+    private boolean match(TokenType type) {
+        if (this.check(type)) {
+            // todo can we get out of this side effect here?
+            this.advance();
 
-                return true;
-            }
+            return true;
         }
 
         return false;
@@ -199,15 +283,15 @@ class Parser {
             return false;
         }
 
-        return this.peek().tokenType() == type;
+        return this.tokens.type(this.current) == type;
     }
 
     private boolean hasNext() {
-        return this.peek().tokenType() != EOF;
+        return this.tokens.type(this.current) != EOF;
     }
 
     private Token peek() {
-        return this.tokens.get(this.current);
+        return this.tokens.token(this.current);
     }
 
     private Token advance() {
@@ -219,18 +303,18 @@ class Parser {
     }
 
     private Token previous() {
-        return this.tokens.get(current - 1);
+        return this.tokens.token(current - 1);
     }
 
     private void synchronize() {
         this.advance();
 
         while (this.hasNext()) {
-            if (this.previous().tokenType() == SEMI_COLON) {
+            if (this.tokens.type(this.current - 1) == SEMI_COLON) {
                 return;
             }
 
-            if (KEYWORD_SYNCRHONIZERS.contains(this.peek().tokenType())) {
+            if (KEYWORD_SYNCRHONIZERS.contains(this.tokens.type(this.current))) {
                 return;
             }
 
@@ -243,23 +327,57 @@ class Parser {
 
     Collection<Statement> parse() {
         var statements = new ArrayList<Statement>();
+        for (Statement statement = this.next(); statement != null; statement = this.next()) {
+            statements.add(statement);
+        }
+
+        return statements;
+    }
+
+    /**
+     * Parses the next top level declaration, {@code null} once the input is
+     * exhausted. Declarations that fail to parse are reported and skipped.
+     */
+    Statement next() {
         while (this.hasNext()) {
             try {
-                statements.add(this.declaration());
+                return this.declaration();
             } catch (ParseException ex) {
+                this.open.clear();
                 this.synchronize();
             }
         }
 
-        return statements;
+        return null;
     }
 
+    /**
+     * Parses a declaration with the statements it's made of on a stack of
+     * the ones still open, waiting for a statement in them, rather than
+     * recursively, generated code can nest them deeper than the thread's
+     * stack allows, like it can expressions.
+     */
     private Statement declaration() {
-        if (this.match(VAR)) {
-            return this.variableDeclaration();
-        }
+        for (;;) {
+            Open top = this.open.isEmpty() ? null : this.open.get(this.open.size() - 1);
+            Statement statement;
+            if (top != null && top.type == LEFT_BRACE && (this.check(RIGHT_BRACE) || !this.hasNext())) {
+                this.consume(RIGHT_BRACE, "Expect '}' after block.");
+                this.open.remove(this.open.size() - 1);
+                statement = new Block(top.statements);
+            } else {
+                // only blocks take declarations, the other statements take statements
+                statement = this.start(top == null || top.type == LEFT_BRACE);
+            }
+
+            while (statement != null) {
+                if (this.open.isEmpty()) {
+                    return statement;
+                }
 
-        return this.statement();
+                statement = this.close(statement);
+            }
+        }
     }
 
     private Statement variableDeclaration() {
@@ -275,22 +393,39 @@ class Parser {
         return new Var(name, initializer);
     }
 
-    private Statement statement() {
-        if (this.match(FOR))
-            return this.forStatement();
-        if (this.match(IF))
-            return this.conditional();
-        if (this.match(PRINT))
+    /**
+     * Parses the next statement up to the one in it, if it has one, opening
+     * it, and returns {@code null}, or the whole statement if it doesn't.
+     */
+    private Statement start(boolean declaration) {
+        if (declaration && this.match(VAR)) {
+            return this.variableDeclaration();
+        }
+
+        if (this.match(FOR)) {
+            this.forClauses();
+        } else if (this.match(IF)) {
+            this.consume(LEFT_PAREN, "Expect '(' after 'if'.");
+            Expr condition = this.expression();
+            this.consume(RIGHT_PAREN, "Expect ')' after if condition.");
+            this.open.add(new Open(IF, condition));
+        } else if (this.match(PRINT)) {
             return this.printStatement();
-        if (this.match(WHILE))
-            return this.whileStatement();
-        if (this.match(LEFT_BRACE))
-            return this.block();
+        } else if (this.match(WHILE)) {
+            this.consume(LEFT_PAREN, "Expect '(' after 'while'.");
+            Expr condition = this.expression();
+            this.consume(RIGHT_PAREN, "Expect ')' after condition.");
+            this.open.add(new Open(WHILE, condition));
+        } else if (this.match(LEFT_BRACE)) {
+            this.open.add(new Open(LEFT_BRACE, null));
+        } else {
+            return this.expressionStatement();
+        }
 
-        return this.expressionStatement();
+        return null;
     }
 
-    private Statement forStatement() {
+    private void forClauses() {
         this.consume(LEFT_PAREN, "Expect '(' after 'for'.");
 
         Statement initializer;
@@ -302,7 +437,7 @@ class Parser {
             initializer = this.expressionStatement();
         }
 
-        Expr condition = null;
+        Expr condition = new Literal(Boolean.TRUE);
         if (!this.check(SEMI_COLON)) {
             condition = this.expression();
         }
@@ -314,31 +449,42 @@ class Parser {
         }
 
         this.consume(RIGHT_PAREN, "Expect ')' after for clauses.");
-        Statement body = this.statement();
+        var open = new Open(FOR, condition);
+        open.initializer = initializer;
+        open.increment = increment;
+        this.open.add(open);
+    }
 
-        if (increment != null) {
-            body = new Block(List.of(body, new Expression(increment)));
-        }
+    /**
+     * Gives the statement on top of the stack the one parsed in it, and
+     * returns it if that finished it, {@code null} if it's still open.
+     */
+    private Statement close(Statement statement) {
+        Open top = this.open.get(this.open.size() - 1);
+        if (top.type == LEFT_BRACE) {
+            top.statements.add(statement);
 
-        if (condition == null) {
-            condition = new Literal(Boolean.TRUE);
+            return null;
         }
 
-        return new Block(List.of(initializer, new While(condition, body)));
-    }
-
-    private Statement conditional() {
-        this.consume(LEFT_PAREN, "Expect '(' after 'if'.");
-        Expr expr = this.expression();
-        consume(RIGHT_PAREN, "Expect ')' after if condition.");
+        if (top.type == IF && top.thenBranch == null && this.match(ELSE)) {
+            top.thenBranch = statement;
 
-        Statement thenBranch = this.statement();
-        Statement elseBranch = NullStatement.instance();
-        if (this.match(ELSE)) {
-            elseBranch = this.statement();
+            return null;
         }
 
-        return new Conditional(expr, thenBranch, elseBranch);
+        this.open.remove(this.open.size() - 1);
+
+        return switch (top.type) {
+            case IF -> top.thenBranch == null
+                ? new Conditional(top.condition, statement, NullStatement.instance())
+                : new Conditional(top.condition, top.thenBranch, statement);
+            case WHILE -> new While(top.condition, statement);
+            default -> new Block(List.of(
+                top.initializer,
+                new While(top.condition, new Block(List.of(statement, new Expression(top.increment))))
+            ));
+        };
     }
 
     private Statement printStatement() {
@@ -348,27 +494,6 @@ class Parser {
         return new Print(value);
     }
 
-    private Statement whileStatement() {
-        this.consume(LEFT_PAREN, "Expect '(' after 'while'.");
-        Expr condition = this.expression();
-        this.consume(RIGHT_PAREN, "Expect ')' after condition.");
-        Statement body = this.statement();
-
-        return new While(condition, body);
-    }
-
-    private Statement block() {
-        var statements = new ArrayList<Statement>();
-
-        while (!this.check(RIGHT_BRACE) && this.hasNext()) {
-            statements.add(this.declaration());
-        }
-
-        this.consume(RIGHT_BRACE, "Expect '}' after block.");
-
-        return new Block(statements);
-    }
-
     private Statement expressionStatement() {
         Expr expr = this.expression();
         consume(SEMI_COLON, "Expect ';' after expression.");
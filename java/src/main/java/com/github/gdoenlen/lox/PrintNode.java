@@ -0,0 +1,23 @@
+package com.github.gdoenlen.lox;
+
+final class PrintNode extends StatementNode {
+    private final OutputSink out;
+    private ExprNode value;
+
+    PrintNode(OutputSink out, ExprNode value) {
+        this.out = out;
+        this.value = this.adopt(value);
+    }
+
+    @Override
+    void execute(NodeFrame frame) {
+        this.out.print(this.value.execute(frame));
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.value == oldChild) {
+            this.value = (ExprNode) newChild;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.gdoenlen.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The tree {@link Interpreter} for {@code --profile}. Every statement and
+ * expression it evaluates is counted, timed and charged with the bytes
+ * allocated while it ran, all of it added up by source line.
+ *
+ * The counting is done by overriding the interpreter's dispatch, the plain
+ * interpreter doesn't have a single extra check in it and its calls to
+ * itself stay monomorphic as long as this class is never loaded.
+ *
+ * Self is the time and bytes of a node minus those of the nodes under it,
+ * total counts a line once however deep it's nested in itself. Nodes with no
+ * token of their own, literals, prints or blocks, are charged to the first
+ * line under them, or to the line of the node they're part of.
+ */
+final class ProfilingInterpreter extends Interpreter {
+    private static final int HOT_LINES = 20;
+
+    private static final class Line {
+        private final int number;
+        private long count = 0;
+        private long self = 0;
+        private long total = 0;
+        private long allocated = 0;
+        private int active = 0;
+
+        private Line(int number) {
+            this.number = number;
+        }
+    }
+
+    private final Map<Object, Line> nodes = new IdentityHashMap<>();
+    private final Map<Integer, Line> lines = new HashMap<>();
+    private final com.sun.management.ThreadMXBean threads;
+    private Line[] running = new Line[64];
+    private long[] childTime = new long[64];
+    private long[] childBytes = new long[64];
+    private int depth = 0;
+
+    ProfilingInterpreter() {
+        this(new Environment(), OutputSink.stdout());
+    }
+
+    ProfilingInterpreter(Environment globals, OutputSink out) {
+        super(globals, out);
+        this.threads = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported() ? bean : null;
+    }
+
+    @Override
+    long interpret(Expr expr) {
+        Line line = this.enter(expr);
+        long bytes = this.allocated();
+        long start = System.nanoTime();
+        try {
+            return super.interpret(expr);
+        } finally {
+            this.exit(line, start, bytes);
+        }
+    }
+
+    @Override
+    void interpret(Statement statement) {
+        Line line = this.enter(statement);
+        long bytes = this.allocated();
+        long start = System.nanoTime();
+        try {
+            super.interpret(statement);
+        } finally {
+            this.exit(line, start, bytes);
+        }
+    }
+
+    private Line enter(Object node) {
+        Line line = this.nodes.get(node);
+        if (line == null) {
+            int number = line(node);
+            if (number < 0) {
+                number = this.depth > 0 ? this.running[this.depth - 1].number : 0;
+            }
+
+            line = this.lines.computeIfAbsent(number, Line::new);
+            this.nodes.put(node, line);
+        }
+
+        if (this.depth == this.running.length) {
+            this.running = Arrays.copyOf(this.running, this.depth * 2);
+            this.childTime = Arrays.copyOf(this.childTime, this.depth * 2);
+            this.childBytes = Arrays.copyOf(this.childBytes, this.depth * 2);
+        }
+
+        this.running[this.depth] = line;
+        this.childTime[this.depth] = 0;
+        this.childBytes[this.depth] = 0;
+        this.depth++;
+        line.count++;
+        line.active++;
+
+        return line;
+    }
+
+    private void exit(Line line, long start, long bytes) {
+        long elapsed = System.nanoTime() - start;
+        long allocated = this.allocated() - bytes;
+        this.depth--;
+        line.self += elapsed - this.childTime[this.depth];
+        line.allocated += allocated - this.childBytes[this.depth];
+        if (--line.active == 0) {
+            line.total += elapsed;
+        }
+
+        if (this.depth > 0) {
+            this.childTime[this.depth - 1] += elapsed;
+            this.childBytes[this.depth - 1] += allocated;
+        }
+    }
+
+    private long allocated() {
+        return this.threads == null ? 0 : this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * The line of the node's own token, or the first one under it, -1 if there's none.
+     */
+    @SuppressWarnings("unused")
+    static int line(Object node) {
+        return switch (node) {
+            case Assign a -> a.token().line();
+            case Binary b -> b.operator().line();
+            case Grouping g -> line(g.expr());
+            case Logical l -> l.operator().line();
+            case Unary u -> u.operator().line();
+            case Variable v -> v.token().line();
+            case Expression e -> line(e.expr());
+            case Print p -> line(p.value());
+            case Var v -> v.token().line();
+            case Conditional c -> line(c.condition());
+            case While w -> line(w.condition());
+            case Block b -> b.statements().stream()
+                .mapToInt(ProfilingInterpreter::line)
+                .filter(number -> number >= 0)
+                .findFirst()
+                .orElse(-1);
+            default -> -1;
+        };
+    }
+
+    /**
+     * The lines that took the most time themselves, with their source if
+     * {@code script} isn't {@code null}.
+     */
+    String report(Path script) {
+        List<Line> hot = new ArrayList<>(this.lines.values());
+        hot.sort(Comparator.comparingLong((Line line) -> line.self).reversed());
+        hot = hot.subList(0, Math.min(HOT_LINES, hot.size()));
+
+        long self = this.lines.values().stream().mapToLong(line -> line.self).sum();
+        Map<Integer, String> source = source(script, hot);
+        var report = new StringBuilder()
+            .append(String.format("Profile: %.2f ms in %d lines%n", self / 1e6, this.lines.size()))
+            .append(String.format("%6s %14s %10s %10s %14s  %s%n", "line", "count", "self ms", "total ms", "self bytes", "source"));
+        for (Line line : hot) {
+            report.append(String.format(
+                "%6s %,14d %10.2f %10.2f %,14d  %s%n",
+                line.number == 0 ? "-" : Integer.toString(line.number),
+                line.count,
+                line.self / 1e6,
+                line.total / 1e6,
+                line.allocated,
+                source.getOrDefault(line.number, "")
+            ));
+        }
+
+        return report.toString();
+    }
+
+    private static Map<Integer, String> source(Path script, List<Line> lines) {
+        var source = new HashMap<Integer, String>();
+        if (script == null) {
+            return source;
+        }
+
+        int last = lines.stream().mapToInt(line -> line.number).max().orElse(0);
+        try (Stream<String> file = Files.lines(script)) {
+            var numbers = lines.stream().map(line -> line.number).toList();
+            var iterator = file.limit(last).iterator();
+            for (int number = 1; iterator.hasNext(); number++) {
+                String text = iterator.next();
+                if (numbers.contains(number)) {
+                    source.put(number, text.strip());
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return source;
+    }
+}
@@ -0,0 +1,623 @@
+package com.github.gdoenlen.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Parsed programs saved in a directory, so running the same script again
+ * skips lexing and parsing. An entry is named after the SHA-256 of the
+ * interpreter's version and build and the source, and holds the statements as the
+ * {@link Parser} returned them, before they're optimized or resolved.
+ *
+ * An entry is a header, the magic number, {@link #FORMAT}, the version and
+ * build and
+ * the length and CRC-32 of the body, and the body: every string and number
+ * once, then the statements in prefix order, each a tag followed by its
+ * parts, tokens and literals pointing into the tables. Counts, indexes and
+ * lines are variable length, most take a byte or two. Tokens are saved
+ * without a literal, the parser keeps those in {@link Literal}s. Entries are mapped,
+ * not read, and checked before they're trusted; one that is missing,
+ * unreadable, damaged or from another version is a miss.
+ */
+final class ProgramCache {
+    private static final int MAGIC = 0x4C4F5843; // LOXC
+    private static final int FORMAT = 1;
+    private static final String VERSION = FORMAT + "/" + Lox.version() + "/" + build();
+    private static final int HEADER = 4 + 4 + 2 + 4 + 4;
+
+    // statements
+    private static final byte BLOCK = 0;
+    private static final byte CONDITIONAL = 1;
+    private static final byte EXPRESSION = 2;
+    private static final byte NULL_STATEMENT = 3;
+    private static final byte PRINT = 4;
+    private static final byte VAR = 5;
+    private static final byte WHILE = 6;
+    // expressions
+    private static final byte ASSIGN = 16;
+    private static final byte BINARY = 17;
+    private static final byte GROUPING = 18;
+    private static final byte LITERAL = 19;
+    private static final byte LOGICAL = 20;
+    private static final byte NULL_EXPR = 21;
+    private static final byte UNARY = 22;
+    private static final byte VARIABLE = 23;
+    // literal values
+    private static final byte NIL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final Path directory;
+
+    ProgramCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The statements {@code source} parsed to last time, {@code null} if
+     * they aren't cached or the entry can't be used.
+     *
+     * @param symbols the table of the program, its names are interned into
+     */
+    Collection<Statement> load(String source, Symbols symbols) {
+        Path entry = this.entry(source);
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(entry)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ex) {
+            return null;
+        }
+
+        try {
+            return new Reader(buffer, symbols).program();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException | ClassCastException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the statements {@code source} parsed to. The entry is written
+     * next to where it goes and moved in place, so a concurrent
+     * {@link #load(String, Symbols)} sees all of it or none of it. A cache that
+     * can't be written to is only a slower one, failures are ignored.
+     */
+    void store(String source, Collection<Statement> statements) {
+        Path entry = this.entry(source);
+        Path temporary = null;
+        try {
+            byte[] body = new Writer().program(statements);
+            var crc = new CRC32();
+            crc.update(body);
+            byte[] version = VERSION.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(HEADER + version.length)
+                .putInt(MAGIC)
+                .putInt(FORMAT)
+                .putShort((short) version.length)
+                .put(version)
+                .putInt(body.length)
+                .putInt((int) crc.getValue());
+
+            Files.createDirectories(this.directory);
+            temporary = Files.createTempFile(this.directory, entry.getFileName().toString(), ".tmp");
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.write(new ByteBuffer[] { header.flip(), ByteBuffer.wrap(body) });
+            }
+
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            delete(temporary);
+        }
+    }
+
+    /**
+     * A hash of the bytecode of the classes that decide what a source parses
+     * to and how it's saved, so an entry isn't mistaken for one of another
+     * build with the same version, like every development build is.
+     */
+    private static String build() {
+        Class<?>[] classes = {
+            Lexer.class, CharScanner.class, ScalarCharScanner.class, VectorCharScanner.class, Token.class,
+            TokenType.class, Parser.class, ProgramCache.class,
+            Block.class, Conditional.class, Expression.class, NullStatement.class, Print.class, Var.class,
+            While.class, Assign.class, Binary.class, Grouping.class, Literal.class, Logical.class, NullExpr.class,
+            Unary.class, Variable.class
+        };
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (Class<?> type : classes) {
+                for (Class<?> member : type.getNestMembers()) {
+                    String name = member.getName();
+                    digest.update(name.getBytes(StandardCharsets.UTF_8));
+                    try (var in = member.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+                        if (in != null) {
+                            digest.update(in.readAllBytes());
+                        }
+                    }
+                }
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            if (path != null) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException ex) {
+            // left behind, named so it's never mistaken for an entry
+        }
+    }
+
+    private Path entry(String source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+
+            return this.directory.resolve(HexFormat.of().formatHex(digest.digest()) + ".loxc");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Double, Integer> numbers = new HashMap<>();
+        private Object[] nodes = new Object[64];
+        private int pending = 0;
+
+        /**
+         * @throws CharacterCodingException for a string with a lone
+         * surrogate, which wouldn't come back the same from UTF-8
+         */
+        byte[] program(Collection<Statement> statements) throws IOException {
+            this.out.writeInt(statements.size());
+            for (Statement statement : statements) {
+                this.statement(statement);
+            }
+
+            this.out.flush();
+            var nodes = new ByteArrayOutputStream();
+            this.bytes.writeTo(nodes);
+            this.bytes.reset();
+
+            CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+            this.out.writeInt(this.strings.size());
+            for (String string : this.table(this.strings)) {
+                ByteBuffer encoded = utf8.encode(CharBuffer.wrap(string));
+                this.out.writeInt(encoded.remaining());
+                this.out.write(encoded.array(), encoded.arrayOffset(), encoded.remaining());
+            }
+
+            this.out.writeInt(this.numbers.size());
+            for (Double number : this.table(this.numbers)) {
+                this.out.writeDouble(number);
+            }
+
+            this.out.flush();
+            nodes.writeTo(this.bytes);
+
+            return this.bytes.toByteArray();
+        }
+
+        private <T> List<T> table(Map<T, Integer> indices) {
+            var table = new ArrayList<T>(Collections.nCopies(indices.size(), null));
+            indices.forEach((value, index) -> table.set(index, value));
+
+            return table;
+        }
+
+        /**
+         * Writes {@code root} in prefix order off a stack of what's still to
+         * be written, nodes and the operators between their operands, rather
+         * than recursing, so a program nests as deep as the parser lets it.
+         */
+        @SuppressWarnings("unused")
+        private void statement(Statement root) throws IOException {
+            this.push(root);
+            while (this.pending > 0) {
+                Object node = this.nodes[--this.pending];
+                this.nodes[this.pending] = null;
+                switch (node) {
+                    case Block b -> {
+                        this.out.writeByte(BLOCK);
+                        this.varint(b.statements().size());
+                        Statement[] statements = b.statements().toArray(new Statement[0]);
+                        for (int i = statements.length - 1; i >= 0; i--) {
+                            this.push(statements[i]);
+                        }
+                    }
+                    case Conditional c -> {
+                        this.out.writeByte(CONDITIONAL);
+                        this.push(c.elseBranch());
+                        this.push(c.thenBranch());
+                        this.push(c.condition());
+                    }
+                    case Expression e -> {
+                        this.out.writeByte(EXPRESSION);
+                        this.push(e.expr());
+                    }
+                    case NullStatement ns -> this.out.writeByte(NULL_STATEMENT);
+                    case Print p -> {
+                        this.out.writeByte(PRINT);
+                        this.push(p.value());
+                    }
+                    case Var v -> {
+                        this.out.writeByte(VAR);
+                        this.token(v.token());
+                        this.push(v.initializer());
+                    }
+                    case While w -> {
+                        this.out.writeByte(WHILE);
+                        this.push(w.body());
+                        this.push(w.condition());
+                    }
+                    case Assign a -> {
+                        this.out.writeByte(ASSIGN);
+                        this.token(a.token());
+                        this.push(a.value());
+                    }
+                    case Binary b -> {
+                        this.out.writeByte(BINARY);
+                        this.push(b.right());
+                        this.push(b.operator());
+                        this.push(b.left());
+                    }
+                    case Grouping g -> {
+                        this.out.writeByte(GROUPING);
+                        this.push(g.expr());
+                    }
+                    case Literal l -> {
+                        this.out.writeByte(LITERAL);
+                        this.value(l.value());
+                    }
+                    case Logical l -> {
+                        this.out.writeByte(LOGICAL);
+                        this.push(l.right());
+                        this.push(l.operator());
+                        this.push(l.left());
+                    }
+                    case NullExpr n -> this.out.writeByte(NULL_EXPR);
+                    case Unary u -> {
+                        this.out.writeByte(UNARY);
+                        this.token(u.operator());
+                        this.push(u.right());
+                    }
+                    case Variable v -> {
+                        this.out.writeByte(VARIABLE);
+                        this.token(v.token());
+                    }
+                    case Token operator -> this.token(operator);
+                    default -> throw new IllegalArgumentException(node.getClass().toString());
+                }
+            }
+        }
+
+        private void push(Object node) {
+            if (this.pending == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, this.pending * 2);
+            }
+
+            this.nodes[this.pending++] = node;
+        }
+
+        private void token(Token token) throws IOException {
+            this.out.writeByte(token.tokenType().ordinal());
+            this.varint(this.strings.computeIfAbsent(token.lexeme(), s -> this.strings.size()));
+            this.varint(token.line());
+        }
+
+        private void value(Object value) throws IOException {
+            switch (value) {
+                case null -> this.out.writeByte(NIL);
+                case Boolean b -> this.out.writeByte(b ? TRUE : FALSE);
+                case Double d -> {
+                    this.out.writeByte(NUMBER);
+                    this.varint(this.numbers.computeIfAbsent(d, n -> this.numbers.size()));
+                }
+                case String s -> {
+                    this.out.writeByte(STRING);
+                    this.varint(this.strings.computeIfAbsent(s, n -> this.strings.size()));
+                }
+                default -> throw new IllegalArgumentException(value.getClass().toString());
+            }
+        }
+
+        /**
+         * Seven bits at a time, low first, the high bit set on all but the last byte.
+         */
+        private void varint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            this.out.writeByte(value);
+        }
+    }
+
+    /**
+     * Reads an entry, throwing one of the exceptions
+     * {@link #load(String, Symbols)} treats as a miss on anything unexpected.
+     */
+    private static final class Reader {
+        private final ByteBuffer in;
+        private final Symbols symbols;
+        private String[] strings;
+        private double[] numbers;
+        private byte[] tags = new byte[64];
+        private int[] sizes = new int[64];
+        private int[] remaining = new int[64];
+        private Token[] tokens = new Token[64];
+        private int open = 0;
+        private Object[] results = new Object[64];
+        private int count = 0;
+
+        Reader(ByteBuffer in, Symbols symbols) {
+            this.in = in;
+            this.symbols = symbols;
+        }
+
+        Collection<Statement> program() {
+            if (this.in.getInt() != MAGIC || this.in.getInt() != FORMAT) {
+                throw new IllegalArgumentException("Not a cache entry of this format");
+            }
+
+            var version = new byte[Short.toUnsignedInt(this.in.getShort())];
+            this.in.get(version);
+            if (!VERSION.equals(new String(version, StandardCharsets.UTF_8))) {
+                throw new IllegalArgumentException("Cached by another version");
+            }
+
+            int length = this.in.getInt();
+            int checksum = this.in.getInt();
+            if (length != this.in.remaining()) {
+                throw new IllegalArgumentException("Truncated");
+            }
+
+            var crc = new CRC32();
+            crc.update(this.in.slice());
+            if ((int) crc.getValue() != checksum) {
+                throw new IllegalArgumentException("Damaged");
+            }
+
+            this.strings = new String[this.in.getInt()];
+            for (int i = 0; i < this.strings.length; i++) {
+                var utf8 = new byte[this.in.getInt()];
+                this.in.get(utf8);
+                this.strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+
+            this.numbers = new double[this.in.getInt()];
+            for (int i = 0; i < this.numbers.length; i++) {
+                this.numbers[i] = this.in.getDouble();
+            }
+
+            int count = this.in.getInt();
+            var statements = new ArrayList<Statement>(count);
+            for (int i = 0; i < count; i++) {
+                statements.add(this.statement());
+            }
+
+            if (this.in.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes");
+            }
+
+            return statements;
+        }
+
+        private Statement statement() {
+            return (Statement) this.node();
+        }
+
+        /**
+         * Reads a node and everything under it with a stack of the nodes
+         * whose children are still being read instead of recursing, so it
+         * reads back whatever was written, and builds them bottom up, their
+         * children taken off a stack of results, like {@link Rewriter}.
+         */
+        private Object node() {
+            int bottom = this.open;
+            for (;;) {
+                Object node = this.start();
+                while (node != null) {
+                    if (this.open == bottom) {
+                        return node;
+                    }
+
+                    this.push(node);
+                    int top = this.open - 1;
+                    if (--this.remaining[top] > 0) {
+                        if (this.remaining[top] == 1 && (this.tags[top] == BINARY || this.tags[top] == LOGICAL)) {
+                            // the operator is between the operands
+                            this.tokens[top] = this.token();
+                        }
+
+                        node = null;
+                    } else {
+                        this.open--;
+                        node = this.finish(this.tags[top], this.sizes[top], this.tokens[top]);
+                        this.tokens[top] = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads the next node up to its children, and opens it, returning
+         * {@code null}, or the whole node if it has none.
+         */
+        private Object start() {
+            byte tag = this.in.get();
+
+            return switch (tag) {
+                case BLOCK -> {
+                    int count = this.varint();
+                    if (count < 0) {
+                        throw new IllegalArgumentException("Negative count");
+                    }
+
+                    yield count == 0 ? new Block(new ArrayList<>()) : this.open(tag, count, null);
+                }
+                case CONDITIONAL -> this.open(tag, 3, null);
+                case EXPRESSION, PRINT, GROUPING -> this.open(tag, 1, null);
+                case VAR, ASSIGN, UNARY -> this.open(tag, 1, this.token());
+                case WHILE, BINARY, LOGICAL -> this.open(tag, 2, null);
+                case NULL_STATEMENT -> NullStatement.instance();
+                case LITERAL -> new Literal(this.value());
+                case NULL_EXPR -> NullExpr.instance();
+                case VARIABLE -> new Variable(this.token());
+                default -> throw new IllegalArgumentException("Unknown node " + tag);
+            };
+        }
+
+        private Object open(byte tag, int children, Token token) {
+            if (this.open == this.tags.length) {
+                this.tags = Arrays.copyOf(this.tags, this.open * 2);
+                this.sizes = Arrays.copyOf(this.sizes, this.open * 2);
+                this.remaining = Arrays.copyOf(this.remaining, this.open * 2);
+                this.tokens = Arrays.copyOf(this.tokens, this.open * 2);
+            }
+
+            this.tags[this.open] = tag;
+            this.sizes[this.open] = children;
+            this.remaining[this.open] = children;
+            this.tokens[this.open++] = token;
+
+            return null;
+        }
+
+        /**
+         * The node {@code tag} opened, with its children taken off the
+         * results, a {@link ClassCastException} if one isn't of the kind
+         * it should be.
+         */
+        private Object finish(byte tag, int children, Token token) {
+            return switch (tag) {
+                case BLOCK -> {
+                    var statements = new Statement[children];
+                    for (int i = children - 1; i >= 0; i--) {
+                        statements[i] = (Statement) this.pop();
+                    }
+
+                    yield new Block(Arrays.asList(statements));
+                }
+                case CONDITIONAL -> {
+                    var elseBranch = (Statement) this.pop();
+                    var thenBranch = (Statement) this.pop();
+
+                    yield new Conditional((Expr) this.pop(), thenBranch, elseBranch);
+                }
+                case EXPRESSION -> new Expression((Expr) this.pop());
+                case PRINT -> new Print((Expr) this.pop());
+                case VAR -> new Var(token, (Expr) this.pop());
+                case WHILE -> {
+                    var body = (Statement) this.pop();
+
+                    yield new While((Expr) this.pop(), body);
+                }
+                case ASSIGN -> new Assign(token, (Expr) this.pop());
+                case BINARY -> {
+                    var right = (Expr) this.pop();
+
+                    yield new Binary((Expr) this.pop(), token, right);
+                }
+                case GROUPING -> new Grouping((Expr) this.pop());
+                case LOGICAL -> {
+                    var right = (Expr) this.pop();
+
+                    yield new Logical((Expr) this.pop(), token, right);
+                }
+                case UNARY -> new Unary(token, (Expr) this.pop());
+                default -> throw new IllegalStateException("Not opened " + tag);
+            };
+        }
+
+        private void push(Object result) {
+            if (this.count == this.results.length) {
+                this.results = Arrays.copyOf(this.results, this.count * 2);
+            }
+
+            this.results[this.count++] = result;
+        }
+
+        private Object pop() {
+            Object result = this.results[--this.count];
+            this.results[this.count] = null;
+
+            return result;
+        }
+
+        private Token token() {
+            TokenType type = TOKEN_TYPES[this.in.get()];
+            String lexeme = this.strings[this.varint()];
+            int symbol = type == TokenType.IDENTIFIER ? this.symbols.intern(lexeme) : Symbols.NONE;
+
+            return new Token(type, lexeme, null, this.varint(), symbol);
+        }
+
+        private Object value() {
+            byte tag = this.in.get();
+
+            return switch (tag) {
+                case NIL -> null;
+                case TRUE -> Boolean.TRUE;
+                case FALSE -> Boolean.FALSE;
+                case NUMBER -> this.numbers[this.varint()];
+                case STRING -> this.strings[this.varint()];
+                default -> throw new IllegalArgumentException("Unknown value " + tag);
+            };
+        }
+
+        private int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = this.in.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Varint too long");
+        }
+    }
+}
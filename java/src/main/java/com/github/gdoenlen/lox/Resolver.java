@@ -0,0 +1,167 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds every local variable reference to the (depth, slot) of the
+ * {@link Frame} that holds it. Globals are left unresolved but are
+ * checked so undefined variables are reported before anything runs.
+ *
+ * The set of known globals, by {@link Token#symbol()}, outlives a single
+ * call to {@link #resolve(Collection)} so the REPL can refer to variables
+ * declared on previous lines, all of them lexed with the same
+ * {@link Symbols}. The globals a call declares are only added to it if
+ * the call reported no errors: the REPL doesn't run a line that failed, so
+ * nothing on it was defined.
+ *
+ * A {@link Rewriter}, so how deep a program nests doesn't depend on the
+ * size of the thread's stack: a block's scope is opened when it's entered
+ * and closed on its way out, a variable is being declared from entering
+ * it until it's defined on the way out, after its initializer.
+ */
+class Resolver extends Rewriter {
+    static final int GLOBAL = -1;
+
+    private final BitSet globals = new BitSet();
+    private final BitSet declared = new BitSet();
+    private final Deque<Scope> scopes = new ArrayDeque<>();
+    private final ErrorReporter errors;
+    private int reported = 0;
+
+    Resolver() {
+        this(Main::error);
+    }
+
+    Resolver(ErrorReporter errors) {
+        this.errors = errors;
+    }
+
+    List<Statement> resolve(Collection<Statement> statements) {
+        this.reported = 0;
+        this.declared.clear();
+        var resolved = new ArrayList<Statement>(statements.size());
+        for (Statement statement : statements) {
+            resolved.add(this.rewrite(statement));
+        }
+
+        if (this.reported == 0) {
+            this.globals.or(this.declared);
+        }
+
+        return resolved;
+    }
+
+    @SuppressWarnings("unused")
+    @Override
+    void enter(Statement statement) {
+        switch (statement) {
+            case Block b -> this.scopes.push(new Scope());
+            case Var v when !this.scopes.isEmpty() -> this.scopes.peek().declaring = v.token().lexeme();
+            default -> {
+                // nothing to declare
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @Override
+    Statement exit(Statement statement) {
+        return switch (statement) {
+            case Block b -> new Block(b.statements(), this.scopes.pop().size());
+            case Var v -> this.declare(v);
+            default -> statement;
+        };
+    }
+
+    private Var declare(Var v) {
+        Scope scope = this.scopes.peek();
+        if (scope == null) {
+            this.declared.set(v.symbol());
+
+            return v;
+        }
+
+        scope.declaring = null;
+
+        return new Var(v.token(), v.initializer(), scope.define(v.token().lexeme()));
+    }
+
+    @SuppressWarnings("unused")
+    @Override
+    Expr exit(Expr expr) {
+        return switch (expr) {
+            case Assign a -> {
+                Location location = this.lookup(a.token());
+
+                yield new Assign(a.token(), a.value(), location.depth(), location.slot());
+            }
+            case Variable v -> {
+                Location location = this.lookup(v.token());
+
+                yield new Variable(v.token(), location.depth(), location.slot());
+            }
+            default -> expr;
+        };
+    }
+
+    private Location lookup(Token token) {
+        String name = token.lexeme();
+        int depth = 0;
+        for (Iterator<Scope> it = this.scopes.iterator(); it.hasNext(); depth++) {
+            Scope scope = it.next();
+            if (name.equals(scope.declaring)) {
+                this.error(token.line(), "Can't read local variable '" + name + "' in its own initializer.");
+
+                return Location.UNRESOLVED;
+            }
+
+            Integer slot = scope.slots.get(name);
+            if (slot != null) {
+                return new Location(depth, slot);
+            }
+        }
+
+        if (!this.globals.get(token.symbol()) && !this.declared.get(token.symbol())) {
+            this.error(token.line(), "Undefined variable '" + name + "'.");
+        }
+
+        return Location.UNRESOLVED;
+    }
+
+    private void error(int line, String message) {
+        this.reported++;
+        this.errors.error(line, message);
+    }
+
+    private record Location(int depth, int slot) {
+        static final Location UNRESOLVED = new Location(GLOBAL, GLOBAL);
+    }
+
+    private static final class Scope {
+        private final Map<String, Integer> slots = new HashMap<>();
+        private int size = 0;
+        private String declaring;
+
+        /**
+         * Redeclaring a name in the same block gets a fresh slot, later
+         * references bind to the newest declaration.
+         */
+        int define(String name) {
+            this.slots.put(name, this.size);
+
+            return this.size++;
+        }
+
+        int size() {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Arrays;
+
+/**
+ * Rebuilds a tree bottom up, children left to right before their parent,
+ * with a stack of the nodes still to do on the heap instead of recursing on
+ * the Java stack, so generated programs can nest as deep as memory allows.
+ *
+ * A pass hooks into it with {@link #enter(Statement)}, before a statement's
+ * children are rewritten, and the {@code exit} methods, given the node with
+ * its children already rewritten, whose result replaces it.
+ */
+abstract class Rewriter {
+    private Object[] nodes = new Object[64];
+    private boolean[] entered = new boolean[64];
+    private int pending = 0;
+    private Object[] results = new Object[64];
+    private int count = 0;
+
+    void enter(Statement statement) {}
+
+    Statement exit(Statement statement) {
+        return statement;
+    }
+
+    Expr exit(Expr expr) {
+        return expr;
+    }
+
+    final Statement rewrite(Statement statement) {
+        return (Statement) this.run(statement);
+    }
+
+    final Expr rewrite(Expr expr) {
+        return (Expr) this.run(expr);
+    }
+
+    private Object run(Object root) {
+        int bottom = this.pending;
+        this.push(root);
+        while (this.pending > bottom) {
+            int top = this.pending - 1;
+            Object node = this.nodes[top];
+            if (!this.entered[top]) {
+                this.entered[top] = true;
+                if (node instanceof Statement statement) {
+                    this.enter(statement);
+                }
+
+                this.pushChildren(node);
+                continue;
+            }
+
+            this.nodes[top] = null;
+            this.entered[top] = false;
+            this.pending--;
+            Object rebuilt = node instanceof Statement statement
+                ? this.exit(this.rebuild(statement))
+                : this.exit(this.rebuild((Expr) node));
+            if (this.count == this.results.length) {
+                this.results = Arrays.copyOf(this.results, this.count * 2);
+            }
+
+            this.results[this.count++] = rebuilt;
+        }
+
+        return this.pop();
+    }
+
+    private void push(Object node) {
+        if (this.pending == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, this.pending * 2);
+            this.entered = Arrays.copyOf(this.entered, this.pending * 2);
+        }
+
+        this.nodes[this.pending++] = node;
+    }
+
+    private Object pop() {
+        Object result = this.results[--this.count];
+        this.results[this.count] = null;
+
+        return result;
+    }
+
+    /**
+     * Last first, so they come off the stack in order.
+     */
+    @SuppressWarnings("unused")
+    private void pushChildren(Object node) {
+        switch (node) {
+            case Assign a -> this.push(a.value());
+            case Binary b -> {
+                this.push(b.right());
+                this.push(b.left());
+            }
+            case Grouping g -> this.push(g.expr());
+            case Logical l -> {
+                this.push(l.right());
+                this.push(l.left());
+            }
+            case Unary u -> this.push(u.right());
+            case Block b -> {
+                Statement[] statements = b.statements().toArray(new Statement[0]);
+                for (int i = statements.length - 1; i >= 0; i--) {
+                    this.push(statements[i]);
+                }
+            }
+            case Conditional c -> {
+                this.push(c.elseBranch());
+                this.push(c.thenBranch());
+                this.push(c.condition());
+            }
+            case Expression e -> this.push(e.expr());
+            case Print p -> this.push(p.value());
+            case Var v -> this.push(v.initializer());
+            case While w -> {
+                this.push(w.body());
+                this.push(w.condition());
+            }
+            default -> {
+                // a leaf
+            }
+        }
+    }
+
+    /**
+     * {@code statement} with its rewritten children, taken off the results.
+     */
+    @SuppressWarnings("unused")
+    private Statement rebuild(Statement statement) {
+        return switch (statement) {
+            case Block b -> {
+                var statements = new Statement[b.statements().size()];
+                for (int i = statements.length - 1; i >= 0; i--) {
+                    statements[i] = (Statement) this.pop();
+                }
+
+                yield new Block(Arrays.asList(statements), b.slots(), b.flattened());
+            }
+            case Conditional c -> {
+                var elseBranch = (Statement) this.pop();
+                var thenBranch = (Statement) this.pop();
+
+                yield new Conditional((Expr) this.pop(), thenBranch, elseBranch);
+            }
+            case Expression e -> new Expression((Expr) this.pop());
+            case NullStatement ns -> ns;
+            case Print p -> new Print((Expr) this.pop());
+            case Var v -> new Var(v.token(), (Expr) this.pop(), v.slot());
+            case While w -> {
+                var body = (Statement) this.pop();
+
+                yield new While((Expr) this.pop(), body);
+            }
+        };
+    }
+
+    @SuppressWarnings("unused")
+    private Expr rebuild(Expr expr) {
+        return switch (expr) {
+            case Assign a -> new Assign(a.token(), (Expr) this.pop(), a.depth(), a.slot());
+            case Binary b -> {
+                var right = (Expr) this.pop();
+
+                yield new Binary((Expr) this.pop(), b.operator(), right);
+            }
+            case Grouping g -> new Grouping((Expr) this.pop());
+            case Literal l -> l;
+            case Logical l -> {
+                var right = (Expr) this.pop();
+
+                yield new Logical((Expr) this.pop(), l.operator(), right);
+            }
+            case NullExpr n -> n;
+            case Unary u -> new Unary(u.operator(), (Expr) this.pop());
+            case Variable v -> v;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The result of a string {@code +}: the two halves are kept as they are and
+ * only copied into one {@link String} the first time the characters are
+ * needed, by {@code print}, {@code ==} or {@link #hashCode()}, after which
+ * the halves are dropped. A loop that keeps appending to a string copies
+ * each character once instead of on every iteration.
+ *
+ * Short pieces are still concatenated right away, appending a short piece
+ * to a rope that ends in a short leaf grows that leaf, so appending a
+ * character at a time doesn't end in a node per character.
+ *
+ * Like {@link String} and {@link StringBuilder} a rope only equals another
+ * rope, comparing one with a string is left to
+ * {@link Operators#isEqual(Object, Object)}, which is what Lox's {@code ==} is.
+ */
+final class Rope implements CharSequence {
+    static final int LEAF = 256;
+
+    private CharSequence left;
+    private CharSequence right;
+    private final int length;
+    private String flat;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = Math.addExact(left.length(), right.length());
+    }
+
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        if (left.length() + right.length() <= LEAF) {
+            return left.toString().concat(right.toString());
+        }
+
+        if (left instanceof Rope rope && rope.flat == null
+            && rope.right.length() + right.length() <= LEAF) {
+            return new Rope(rope.left, rope.right.toString().concat(right.toString()));
+        }
+
+        return new Rope(left, right);
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return this.toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return this.toString().subSequence(start, end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        return o instanceof Rope rope && this.length == rope.length && this.toString().equals(rope.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.toString().hashCode();
+    }
+
+    /**
+     * Flattened without recursion, ropes built in a loop are as deep as
+     * the loop ran.
+     */
+    @Override
+    public String toString() {
+        if (this.flat != null) {
+            return this.flat;
+        }
+
+        var builder = new StringBuilder(this.length);
+        Deque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CharSequence next = pending.pop();
+            if (next instanceof Rope rope && rope.flat == null) {
+                pending.push(rope.right);
+                pending.push(rope.left);
+            } else {
+                builder.append(next.toString());
+            }
+        }
+
+        this.flat = builder.toString();
+        this.left = null;
+        this.right = null;
+
+        return this.flat;
+    }
+}
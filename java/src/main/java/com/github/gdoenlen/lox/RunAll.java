@@ -0,0 +1,182 @@
+package com.github.gdoenlen.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * {@code lox run-all [--parallelism=N] dir/|manifest} runs many scripts in
+ * this JVM instead of a JVM each: every {@code .lox} file under {@code dir},
+ * or every path listed in {@code manifest}, one per line, relative to it,
+ * with blank lines and lines starting with {@code #} skipped.
+ *
+ * Each script is read, compiled and executed with {@link Lox} on a virtual
+ * thread of its own, at most {@code parallelism} at a time, the number of
+ * processors by default. Its output is captured and written to stdout in
+ * the order the scripts were listed, each after a {@code ==> path <==} line,
+ * its errors go to stderr with its exit status: 65 when it doesn't compile,
+ * 70 when it fails while running and 66 when it can't be read. The batch
+ * exits with the highest of them, and prints a summary to stderr.
+ */
+@SuppressWarnings("java:S106") // s.out
+final class RunAll {
+    static final int COMPILE_ERROR = 65;
+    static final int NO_INPUT = 66;
+    static final int RUNTIME_ERROR = 70;
+
+    private record Outcome(Path script, int status, byte[] output, List<Diagnostic> diagnostics, long chars, long nanos) {}
+
+    private RunAll() {}
+
+    /**
+     * @return the exit status of the batch
+     * @throws IllegalArgumentException on bad arguments
+     */
+    static int main(String[] args) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        Path input = null;
+        for (String arg : args) {
+            if (arg.startsWith("--parallelism=")) {
+                parallelism = Integer.parseInt(arg.substring("--parallelism=".length()));
+            } else if (input == null && !arg.startsWith("-")) {
+                input = Path.of(arg);
+            } else {
+                throw new IllegalArgumentException(arg);
+            }
+        }
+
+        if (input == null || parallelism < 1) {
+            throw new IllegalArgumentException("Expected a directory or a manifest and a positive parallelism");
+        }
+
+        List<Path> scripts = scripts(input);
+        long start = System.nanoTime();
+        var permits = new Semaphore(parallelism);
+        var outcomes = new ArrayList<Future<Outcome>>(scripts.size());
+        int status = 0;
+        int failed = 0;
+        long chars = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path script : scripts) {
+                outcomes.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return run(script);
+                    } catch (RuntimeException | StackOverflowError ex) {
+                        // a bug in the interpreter, or a script too deep for it, only fails that script
+                        var diagnostic = new Diagnostic(-1, ex.toString());
+
+                        return new Outcome(script, RUNTIME_ERROR, new byte[0], List.of(diagnostic), 0, 0);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            // in order, while the ones after are still running
+            for (Future<Outcome> future : outcomes) {
+                Outcome outcome = future.get();
+                report(outcome);
+                status = Math.max(status, outcome.status());
+                failed += outcome.status() == 0 ? 0 : 1;
+                chars += outcome.chars();
+            }
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf(
+            "%d scripts, %d failed, in %.2f s: %.1f scripts/s, %.1f KB/s of source, parallelism %d%n",
+            scripts.size(),
+            failed,
+            seconds,
+            scripts.size() / seconds,
+            chars / seconds / 1e3,
+            parallelism
+        );
+
+        return status;
+    }
+
+    private static List<Path> scripts(Path input) {
+        try {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    return files.filter(path -> path.toString().endsWith(".lox") && Files.isRegularFile(path))
+                        .sorted()
+                        .toList();
+                }
+            }
+
+            Path base = input.toAbsolutePath().getParent();
+            try (Stream<String> lines = Files.lines(input)) {
+                return lines.map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(base::resolve)
+                    .toList();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Outcome run(Path script) {
+        long start = System.nanoTime();
+        String source;
+        try {
+            source = Files.readString(script);
+        } catch (IOException ex) {
+            var diagnostic = new Diagnostic(-1, "Can't read " + script + ": " + ex.getMessage());
+
+            return new Outcome(script, NO_INPUT, new byte[0], List.of(diagnostic), 0, System.nanoTime() - start);
+        }
+
+        LoxProgram program;
+        try {
+            program = Lox.compile(source);
+        } catch (LoxException ex) {
+            return new Outcome(script, COMPILE_ERROR, new byte[0], ex.diagnostics(), source.length(), System.nanoTime() - start);
+        }
+
+        var output = new ByteArrayOutputStream();
+        int status = 0;
+        List<Diagnostic> diagnostics = List.of();
+        try {
+            program.execute(output);
+        } catch (LoxException ex) {
+            status = RUNTIME_ERROR;
+            diagnostics = ex.diagnostics();
+        }
+
+        return new Outcome(script, status, output.toByteArray(), diagnostics, source.length(), System.nanoTime() - start);
+    }
+
+    private static void report(Outcome outcome) {
+        PrintStream out = System.out;
+        out.println("==> " + outcome.script() + " <==");
+        out.write(outcome.output(), 0, outcome.output().length);
+        out.flush();
+        if (outcome.status() != 0) {
+            for (Diagnostic diagnostic : outcome.diagnostics()) {
+                System.err.println(outcome.script() + ": " + diagnostic);
+            }
+
+            System.err.printf("%s: exit %d after %.2f ms%n", outcome.script(), outcome.status(), outcome.nanos() / 1e6);
+        }
+    }
+}
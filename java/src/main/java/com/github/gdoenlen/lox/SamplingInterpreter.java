@@ -0,0 +1,166 @@
+package com.github.gdoenlen.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The tree {@link Interpreter} for {@code --sample}. While it runs it keeps
+ * a shadow stack of the blocks, loops and conditionals it's in and the
+ * statement it's on in each, and a background thread reads that stack
+ * {@code rate} times a second. The samples are written in the collapsed
+ * stack format of {@code flamegraph.pl}, one {@code frame;frame;line:N count}
+ * per distinct stack.
+ *
+ * Unlike {@link ProfilingInterpreter} nothing is timed: a statement costs a
+ * store in the stack, a block, loop or conditional a push and a pop, the
+ * lines and labels are worked out by the sampler. The
+ * sampler reads the stack without locking, a sample taken while it changes
+ * can be off by a frame, which sampling doesn't care about.
+ */
+final class SamplingInterpreter extends Interpreter {
+    private static final String ROOT = "lox";
+    private static final VarHandle DEPTH;
+
+    static {
+        try {
+            DEPTH = MethodHandles.lookup().findVarHandle(SamplingInterpreter.class, "depth", int.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private Statement[] frames = new Statement[64];
+    private Statement[] statements = new Statement[64];
+    private int depth = 1;
+    private final long period;
+    private final Map<String, Long> samples = new HashMap<>();
+    private final Map<Statement, String> labels = new IdentityHashMap<>();
+    private Thread sampler = null;
+
+    SamplingInterpreter(int rate) {
+        this(new Environment(), OutputSink.stdout(), rate);
+    }
+
+    SamplingInterpreter(Environment globals, OutputSink out, int rate) {
+        super(globals, out);
+        if (rate < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive");
+        }
+
+        this.period = TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+
+    @Override
+    void interpret(Statement statement) {
+        int depth = this.depth;
+        if (!(statement instanceof Block || statement instanceof While || statement instanceof Conditional)) {
+            this.statements[depth - 1] = statement;
+            super.interpret(statement);
+
+            return;
+        }
+
+        if (depth == this.frames.length) {
+            this.frames = Arrays.copyOf(this.frames, depth * 2);
+            this.statements = Arrays.copyOf(this.statements, depth * 2);
+        }
+
+        this.frames[depth] = statement;
+        this.statements[depth] = null;
+        DEPTH.setRelease(this, depth + 1);
+        try {
+            super.interpret(statement);
+        } finally {
+            DEPTH.setRelease(this, depth);
+        }
+    }
+
+    void start() {
+        this.sampler = new Thread(this::sample, "lox-sampler");
+        this.sampler.setDaemon(true);
+        this.sampler.start();
+    }
+
+    /**
+     * Stops the sampler and writes what it collected to {@code path}.
+     */
+    void stop(Path path) {
+        this.sampler.interrupt();
+        try {
+            this.sampler.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            for (Map.Entry<String, Long> sample : new TreeMap<>(this.samples).entrySet()) {
+                writer.write(sample.getKey());
+                writer.write(' ');
+                writer.write(Long.toString(sample.getValue()));
+                writer.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void sample() {
+        var stack = new StringBuilder();
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this.period);
+
+            // depth first, the frames it covers were written before it
+            int depth = (int) DEPTH.getAcquire(this);
+            Statement[] frames = this.frames;
+            Statement[] statements = this.statements;
+            depth = Math.min(depth, Math.min(frames.length, statements.length));
+            Statement statement = statements[depth - 1];
+            if (depth == 1 && statement == null) {
+                // nothing has run yet
+                continue;
+            }
+
+            stack.setLength(0);
+            stack.append(ROOT);
+            for (int i = 1; i < depth; i++) {
+                if (frames[i] != null) {
+                    stack.append(';').append(this.label(frames[i]));
+                }
+            }
+
+            int line = statement == null ? -1 : ProfilingInterpreter.line(statement);
+            if (line >= 0) {
+                stack.append(";line:").append(line);
+            }
+
+            this.samples.merge(stack.toString(), 1L, Long::sum);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private String label(Statement frame) {
+        return this.labels.computeIfAbsent(frame, node -> {
+            String kind = switch (node) {
+                case Block b -> "block";
+                case While w -> "while";
+                case Conditional c -> "if";
+                default -> "?";
+            };
+            int line = ProfilingInterpreter.line(node);
+
+            return line < 0 ? kind : kind + ":" + line;
+        });
+    }
+}
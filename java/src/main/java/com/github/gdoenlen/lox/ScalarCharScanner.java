@@ -0,0 +1,71 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * One character at a time, straight off the source string.
+ */
+final class ScalarCharScanner implements CharScanner {
+    private final String source;
+
+    ScalarCharScanner(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public int skipBlanks(int from) {
+        int i = from;
+        while (i < this.source.length() && isBlank(this.source.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    @Override
+    public int indexOf(char c, int from) {
+        int index = this.source.indexOf(c, from);
+
+        return index < 0 ? this.source.length() : index;
+    }
+
+    @Override
+    public int count(char c, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (this.source.charAt(i) == c) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int skipAlphaNumerics(int from) {
+        int i = from;
+        while (i < this.source.length() && isAsciiAlphaNumeric(this.source.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    @Override
+    public int skipDigits(int from) {
+        int i = from;
+        while (i < this.source.length() && Lexer.isAsciiDigit(this.source.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    static boolean isAsciiAlphaNumeric(char c) {
+        char lower = (char) (c | 0x20);
+
+        return (lower >= 'a' && lower <= 'z') || Lexer.isAsciiDigit(c);
+    }
+}
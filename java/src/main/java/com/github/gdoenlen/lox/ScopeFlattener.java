@@ -0,0 +1,110 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Flattens the scopes of resolved statements for the tree {@link Interpreter},
+ * so a top level statement allocates one {@link Frame} however many blocks
+ * and loop iterations it runs:
+ *
+ * - every block's locals are moved into the frame of the top level statement
+ *   it's in, at depth 0, after the locals of the blocks around it, blocks
+ *   side by side share slots
+ * - blocks are left flattened, with no frame of their own, and ones nested
+ *   in a block are merged into it
+ * - a top level statement with locals is wrapped in, or if it's a block
+ *   becomes, a block with as many slots as it needs at most
+ *
+ * So a loop body's locals live in the same slots every iteration instead of
+ * a new frame each. Nothing needs to be cleared in between: the resolver
+ * binds a name to a slot from its declaration on, which writes it first.
+ * There are no closures for a local to escape in, if there were their
+ * blocks would have to keep frames of their own.
+ *
+ * It's a {@link Rewriter}, a block's base is pushed when it's entered and
+ * popped once its statements are flattened.
+ *
+ * Only the tree interpreter runs {@link Block#flattened()} blocks, the
+ * other backends take the resolver's scopes as they are.
+ */
+class ScopeFlattener extends Rewriter {
+    private int[] bases = new int[16];
+    private int scopes = 0;
+    private int size = 0;
+    private int max = 0;
+
+    List<Statement> flatten(Collection<Statement> statements) {
+        var flattened = new ArrayList<Statement>(statements.size());
+        for (Statement statement : statements) {
+            this.scopes = 0;
+            this.size = 0;
+            this.max = 0;
+            Statement flat = this.rewrite(statement);
+            if (this.max == 0) {
+                flattened.add(flat);
+            } else if (flat instanceof Block b) {
+                flattened.add(new Block(b.statements(), this.max));
+            } else {
+                flattened.add(new Block(List.of(flat), this.max));
+            }
+        }
+
+        return flattened;
+    }
+
+    @Override
+    void enter(Statement statement) {
+        if (statement instanceof Block b) {
+            if (this.scopes == this.bases.length) {
+                this.bases = Arrays.copyOf(this.bases, this.scopes * 2);
+            }
+
+            this.bases[this.scopes++] = this.size;
+            this.size += b.slots();
+            this.max = Math.max(this.max, this.size);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @Override
+    Statement exit(Statement statement) {
+        return switch (statement) {
+            case Block b -> {
+                var body = new ArrayList<Statement>(b.statements().size());
+                for (Statement flat : b.statements()) {
+                    if (flat instanceof Block nested) {
+                        body.addAll(nested.statements());
+                    } else {
+                        body.add(flat);
+                    }
+                }
+
+                this.size = this.bases[--this.scopes];
+
+                yield new Block(body, 0, true);
+            }
+            case Var v when !v.isGlobal() -> new Var(v.token(), v.initializer(), this.slot(0, v.slot()));
+            default -> statement;
+        };
+    }
+
+    @SuppressWarnings("unused")
+    @Override
+    Expr exit(Expr expr) {
+        return switch (expr) {
+            case Assign a when !a.isGlobal() -> new Assign(a.token(), a.value(), 0, this.slot(a.depth(), a.slot()));
+            case Variable v when !v.isGlobal() -> new Variable(v.token(), 0, this.slot(v.depth(), v.slot()));
+            default -> expr;
+        };
+    }
+
+    /**
+     * The slot in the flattened frame of {@code slot} in the scope {@code depth} blocks out.
+     */
+    private int slot(int depth, int slot) {
+        return this.bases[this.scopes - 1 - depth] + slot;
+    }
+}
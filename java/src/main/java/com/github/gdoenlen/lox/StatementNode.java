@@ -0,0 +1,5 @@
+package com.github.gdoenlen.lox;
+
+abstract class StatementNode extends Node {
+    abstract void execute(NodeFrame frame);
+}
@@ -0,0 +1,152 @@
+package com.github.gdoenlen.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A {@link TokenStream} that lexes on demand from a {@link Reader}.
+ *
+ * Source is read in chunks and scanned by the {@link Lexer} a window at a
+ * time, up to the last newline read, which no token runs past but a
+ * string, one that's still open is scanned again with the next window.
+ * Only the last few tokens are kept, which is all the {@link Parser} ever
+ * looks at. Memory stays proportional to the longest line, or string,
+ * rather than the size of the input.
+ */
+final class StreamingLexer implements TokenStream {
+    private static final int CHUNK = 64 * 1024;
+    /** The parser looks at the current and the previous token, keep a couple more for slack. */
+    private static final int LOOKBEHIND = 4;
+
+    private final Reader reader;
+    private final Symbols symbols;
+    private final ErrorReporter errors;
+    private char[] buffer = new char[CHUNK];
+    private int limit = 0;
+    private boolean eof = false;
+    private int line = 1;
+    /** Where the next window ends at the earliest, past a string left open. */
+    private int minimum = 0;
+
+    /** The tokens of the last window scanned, and the next one of them to emit. */
+    private TokenBuffer scanned = null;
+    private int next = 0;
+    private boolean last = false;
+
+    private final Token[] tokens = new Token[LOOKBEHIND];
+    private int produced = 0;
+
+    StreamingLexer(Reader reader) {
+        this(reader, new Symbols());
+    }
+
+    /**
+     * @param symbols the table of the program read from {@code reader}
+     */
+    StreamingLexer(Reader reader, Symbols symbols) {
+        this(reader, symbols, Main::error);
+    }
+
+    StreamingLexer(Reader reader, Symbols symbols, ErrorReporter errors) {
+        this.reader = reader;
+        this.symbols = symbols;
+        this.errors = errors;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return this.token(index).tokenType();
+    }
+
+    @Override
+    public Token token(int index) {
+        if (index < this.produced - LOOKBEHIND) {
+            throw new IllegalStateException("Token " + index + " has already been discarded");
+        }
+
+        while (index >= this.produced) {
+            this.emit(this.nextToken());
+        }
+
+        return this.tokens[index % LOOKBEHIND];
+    }
+
+    private void emit(Token token) {
+        this.tokens[this.produced % LOOKBEHIND] = token;
+        this.produced++;
+    }
+
+    /**
+     * Scans windows until there's a token, EOF is repeated once the input runs out.
+     */
+    private Token nextToken() {
+        while (this.scanned == null || this.next == this.scanned.size()) {
+            if (this.last) {
+                return this.scanned.token(this.scanned.size() - 1);
+            }
+
+            this.scan();
+        }
+
+        return this.scanned.token(this.next++);
+    }
+
+    /**
+     * Scans what's been read up to its last newline, reading until there's
+     * one at or past {@link #minimum}, or all of it once the input runs out.
+     * A string still open at the end is kept for the next window, which is
+     * at least twice as long, so a long string isn't scanned over and over.
+     */
+    private void scan() {
+        int end = this.fill(this.minimum);
+        var lexer = new Lexer(new String(this.buffer, 0, end), this.line, this.symbols, this.errors);
+        this.last = this.eof && end == this.limit;
+        this.scanned = this.last ? lexer.scanColumnar() : lexer.scanWindow();
+        this.next = 0;
+        this.line = lexer.line();
+
+        int done = this.last ? end : lexer.scanned();
+        System.arraycopy(this.buffer, done, this.buffer, 0, this.limit - done);
+        this.limit -= done;
+        this.minimum = 2 * (end - done);
+    }
+
+    /**
+     * Reads until {@code buffer} has a newline at or past {@code minimum}.
+     *
+     * @return the end of the window, just past the last newline, or of
+     *         everything read once the input runs out
+     */
+    private int fill(int minimum) {
+        int from = minimum;
+        for (;;) {
+            for (int i = this.limit - 1; i >= from; i--) {
+                if (this.buffer[i] == '\n') {
+                    return i + 1;
+                }
+            }
+
+            if (this.eof) {
+                return this.limit;
+            }
+
+            from = Math.max(from, this.limit);
+            if (this.limit == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+            }
+
+            try {
+                int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+                if (read < 0) {
+                    this.eof = true;
+                } else {
+                    this.limit += read;
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
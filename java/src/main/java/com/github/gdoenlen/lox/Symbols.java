@@ -0,0 +1,111 @@
+package com.github.gdoenlen.lox;
+
+import java.util.Arrays;
+
+/**
+ * Interns identifier names into dense ids, {@code 0, 1, 2, ...} in the order
+ * they're first seen. The {@link Lexer} interns straight from the source,
+ * so a name that has been seen before costs a hash and a compare and no
+ * {@link String}. The runtime indexes globals by id and never hashes a name.
+ *
+ * A table belongs to one program, ids only mean something to the code
+ * lexed with it, and goes away with it. The REPL keeps adding to the same
+ * table line after line. It isn't thread safe, a program is lexed by one
+ * thread at a time.
+ */
+final class Symbols {
+    /** The symbol of tokens that aren't identifiers. */
+    static final int NONE = -1;
+
+    private int[] table = new int[64];
+    private String[] names = new String[32];
+    private int size = 0;
+
+    Symbols() {
+        Arrays.fill(this.table, NONE);
+    }
+
+    int intern(String name) {
+        return this.intern(name, 0, name.length());
+    }
+
+    int intern(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = this.table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = this.table[i];
+            if (id == NONE) {
+                return this.add(i, text.subSequence(start, end).toString());
+            }
+
+            if (matches(this.names[id], text, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    String name(int symbol) {
+        return this.names[symbol];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private int add(int slot, String name) {
+        if (this.size == this.names.length) {
+            this.names = Arrays.copyOf(this.names, this.size * 2);
+        }
+
+        int id = this.size++;
+        this.names[id] = name;
+        this.table[slot] = id;
+        if (this.size * 2 > this.table.length) {
+            this.rehash();
+        }
+
+        return id;
+    }
+
+    private void rehash() {
+        this.table = new int[this.table.length * 2];
+        Arrays.fill(this.table, NONE);
+        int mask = this.table.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            String name = this.names[id];
+            int i = hash(name, 0, name.length()) & mask;
+            while (this.table[i] != NONE) {
+                i = (i + 1) & mask;
+            }
+
+            this.table[i] = id;
+        }
+    }
+
+    /**
+     * {@link String#hashCode()} with the bits spread, linear probing does
+     * badly with names that only differ in their last character.
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
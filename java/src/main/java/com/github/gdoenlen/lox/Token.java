@@ -1,5 +1,15 @@
 package com.github.gdoenlen.lox;
 
-record Token(TokenType tokenType, String lexeme, Object literal, int line) {
-
+/**
+ * {@code symbol} is the interned id of an identifier's name in the
+ * {@link Symbols} of its program, and {@link Symbols#NONE} for every other
+ * token.
+ */
+record Token(TokenType tokenType, String lexeme, Object literal, int line, int symbol) {
+    /**
+     * A token that isn't an identifier.
+     */
+    Token(TokenType tokenType, String lexeme, Object literal, int line) {
+        this(tokenType, lexeme, literal, line, Symbols.NONE);
+    }
 }
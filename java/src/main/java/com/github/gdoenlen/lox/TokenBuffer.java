@@ -0,0 +1,124 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokens stored column wise in primitive arrays: type ordinal, start offset,
+ * length, line and the {@link Symbols} id of identifiers. Numbers are parsed while lexing and kept unboxed,
+ * lexemes and string literals are only cut out of the source when a
+ * {@link Token} is asked for.
+ */
+final class TokenBuffer implements TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final String source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private double[] numbers;
+    private int[] symbols;
+    private int size = 0;
+
+    /**
+     * Sized for a token every four characters, typical for Lox, so large
+     * sources rarely have to grow the columns.
+     */
+    TokenBuffer(String source) {
+        this.source = source;
+        int capacity = Math.max(16, source.length() / 4);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.numbers = new double[capacity];
+        this.symbols = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int end, int line) {
+        if (this.size == this.types.length) {
+            int capacity = this.size * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+            this.lines = Arrays.copyOf(this.lines, capacity);
+            this.numbers = Arrays.copyOf(this.numbers, capacity);
+            this.symbols = Arrays.copyOf(this.symbols, capacity);
+        }
+
+        this.types[this.size] = (byte) type.ordinal();
+        this.starts[this.size] = start;
+        this.lengths[this.size] = end - start;
+        this.lines[this.size] = line;
+        this.symbols[this.size] = Symbols.NONE;
+        this.size++;
+    }
+
+    void addNumber(int start, int end, int line, double value) {
+        this.add(TokenType.NUMBER, start, end, line);
+        this.numbers[this.size - 1] = value;
+    }
+
+    void addIdentifier(int start, int end, int line, int symbol) {
+        this.add(TokenType.IDENTIFIER, start, end, line);
+        this.symbols[this.size - 1] = symbol;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return TYPES[this.types[index]];
+    }
+
+    int line(int index) {
+        return this.lines[index];
+    }
+
+    String lexeme(int index) {
+        int start = this.starts[index];
+
+        return this.source.substring(start, start + this.lengths[index]);
+    }
+
+    Object literal(int index) {
+        return switch (this.type(index)) {
+            case NUMBER -> this.numbers[index];
+            case STRING -> {
+                // without the quotes, an unterminated string has no closing one
+                int start = this.starts[index] + 1;
+                int end = this.starts[index] + this.lengths[index];
+                if (end > start && this.source.charAt(end - 1) == '"') {
+                    end--;
+                }
+
+                yield this.source.substring(start, end);
+            }
+            default -> null;
+        };
+    }
+
+    @Override
+    public Token token(int index) {
+        return new Token(
+            this.type(index),
+            this.lexeme(index),
+            this.literal(index),
+            this.lines[index],
+            this.symbols[index]
+        );
+    }
+
+    List<Token> toList() {
+        var tokens = new ArrayList<Token>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            tokens.add(this.token(i));
+        }
+
+        return tokens;
+    }
+}
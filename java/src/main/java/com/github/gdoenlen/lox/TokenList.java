@@ -0,0 +1,18 @@
+package com.github.gdoenlen.lox;
+
+import java.util.List;
+
+/**
+ * A {@link TokenStream} over already materialized tokens.
+ */
+record TokenList(List<Token> tokens) implements TokenStream {
+    @Override
+    public TokenType type(int index) {
+        return this.tokens.get(index).tokenType();
+    }
+
+    @Override
+    public Token token(int index) {
+        return this.tokens.get(index);
+    }
+}
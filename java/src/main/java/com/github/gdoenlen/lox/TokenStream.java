@@ -0,0 +1,11 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Positional access to tokens for the {@link Parser}. Positions only ever
+ * move forward, the parser looks at the current and the previous token.
+ */
+interface TokenStream {
+    TokenType type(int index);
+
+    Token token(int index);
+}
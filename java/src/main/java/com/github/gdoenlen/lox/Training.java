@@ -0,0 +1,201 @@
+package com.github.gdoenlen.lox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@code lox --train[=archive]} writes a class data sharing archive of
+ * everything lox loads while running a representative program, the lexers,
+ * the parser, the records of the tree, every backend, and the classes the
+ * JDK spins up for their pattern switches and lambdas. A JVM started with
+ * {@code -XX:SharedArchiveFile=archive} maps them in instead of loading,
+ * verifying and linking them one at a time, {@code bin/lox} does that when
+ * the archive is next to the jar, which is where it's written by default.
+ *
+ * Archives can only be written when the JVM exits, so this starts a JVM
+ * like this one with {@code -XX:ArchiveClassesAtExit} to run the program.
+ * The archive only works with the same JVM and class path it was written
+ * with, train again after upgrading either, a JVM given a stale one ignores
+ * it and starts as if it had none.
+ */
+@SuppressWarnings("java:S106") // s.out
+final class Training {
+    static final String PROGRAM = "train.lox";
+
+    private static final String ARCHIVE = "-XX:ArchiveClassesAtExit=";
+
+    private Training() {}
+
+    /**
+     * In the JVM it's run in, starts one to write {@code archive}, and in
+     * that one runs the program.
+     *
+     * @param archive where to write it, next to the jar, {@code lox.jar}
+     *                having {@code lox.jsa}, if {@code null}
+     * @return the exit status
+     */
+    static int main(Path archive) {
+        List<String> arguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        if (arguments.stream().anyMatch(argument -> argument.startsWith(ARCHIVE))) {
+            train();
+
+            return 0;
+        }
+
+        String classPath = System.getProperty("java.class.path");
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.endsWith(".jar")) {
+                System.err.println("Only classes in jars can be archived, not " + entry);
+
+                return 1;
+            }
+        }
+
+        if (archive == null) {
+            Path jar = Path.of(classPath.split(File.pathSeparator)[0]);
+            String name = jar.getFileName().toString();
+            archive = jar.resolveSibling(name.substring(0, name.length() - ".jar".length()) + ".jsa");
+        }
+
+        // an archive this one was started with would be the base of the new one
+        List<String> command = Bench.java();
+        Path absolute = archive.toAbsolutePath();
+        command.addAll(List.of(
+            ARCHIVE + absolute,
+            "-cp",
+            classPath,
+            Main.class.getName(),
+            "--train=" + absolute
+        ));
+
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start()
+                .waitFor();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+
+        if (status != 0 || !Files.isRegularFile(absolute)) {
+            System.err.println("Training failed, no archive written to " + absolute);
+
+            return status == 0 ? 1 : status;
+        }
+
+        try {
+            System.err.printf(
+                "Wrote %s, %,d bytes, in %.2f s%n",
+                absolute,
+                Files.size(absolute),
+                (System.nanoTime() - start) / 1e9
+            );
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Runs the program through every path a script can take: each backend,
+     * with and without the optimizer, read whole and streamed, through the
+     * parse cache and through {@link Lox}.
+     */
+    private static void train() {
+        String program = program();
+        var out = new OutputSink(OutputStream.nullOutputStream(), OutputSink.DEFAULT_SIZE, OutputSink.Flush.FULL);
+        for (Backend backend : Backend.values()) {
+            for (boolean optimize : new boolean[] { false, true }) {
+                Collection<Statement> statements = new Parser(new Lexer(program).scanColumnar()).parse();
+                execute(backend, resolve(statements, optimize), out);
+            }
+        }
+
+        var parser = new Parser(new StreamingLexer(new StringReader(program)));
+        var interpreter = new Interpreter(new Environment(), out);
+        var resolver = new Resolver();
+        for (Statement statement = parser.next(); statement != null; statement = parser.next()) {
+            new ScopeFlattener().flatten(resolver.resolve(List.of(statement))).forEach(interpreter::interpret);
+        }
+
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("lox-train");
+            var cache = new ProgramCache(directory);
+            cache.store(program, new Parser(new Lexer(program).scanColumnar()).parse());
+            execute(Backend.TREE, resolve(cache.load(program, new Symbols()), false), out);
+
+            Lox.compile(program).execute(OutputStream.nullOutputStream());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (LoxException ex) {
+            throw new IllegalStateException(PROGRAM + " failed", ex);
+        } finally {
+            delete(directory);
+        }
+
+        if (Main.hadError()) {
+            throw new IllegalStateException(PROGRAM + " failed");
+        }
+    }
+
+    private static String program() {
+        try (InputStream in = Training.class.getResourceAsStream(PROGRAM)) {
+            if (in == null) {
+                throw new IllegalStateException(PROGRAM + " is missing");
+            }
+
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<Statement> resolve(Collection<Statement> statements, boolean optimize) {
+        Collection<Statement> optimized = optimize ? new Optimizer().optimize(statements) : statements;
+
+        return new Resolver().resolve(optimized);
+    }
+
+    private static void execute(Backend backend, Collection<Statement> statements, OutputSink out) {
+        switch (backend) {
+            case TREE -> new ScopeFlattener().flatten(statements).forEach(new Interpreter(new Environment(), out)::interpret);
+            case VM -> new VirtualMachine(out).run(new BytecodeCompiler().compile(statements));
+            case AST -> new NodeInterpreter(out).interpret(statements);
+            case JVM -> new JvmInterpreter(out).interpret(statements);
+        }
+    }
+
+    private static void delete(Path directory) {
+        if (directory == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException ex) {
+            // it's a temporary directory
+        }
+    }
+}
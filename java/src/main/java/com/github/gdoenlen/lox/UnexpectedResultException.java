@@ -0,0 +1,22 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Thrown by a specialized {@code execute*} method when the value it produced
+ * doesn't fit the requested type. The caller gets the value back and is
+ * expected to respecialize to something more generic.
+ */
+class UnexpectedResultException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object result;
+
+    UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+
+        this.result = result;
+    }
+
+    Object result() {
+        return this.result;
+    }
+}
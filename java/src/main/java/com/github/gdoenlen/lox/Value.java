@@ -0,0 +1,100 @@
+package com.github.gdoenlen.lox;
+
+/**
+ * Lox values NaN-boxed into a {@code long}, so the tree {@link Interpreter}
+ * can keep numbers in its {@link Frame}s, the {@link Environment} and its
+ * own locals without a {@link Double} for each.
+ *
+ * A number is the bits of its double, every NaN as the one canonical NaN
+ * {@link Double#doubleToLongBits(double)} gives. That leaves the quiet NaNs
+ * with the sign bit set free, the rest are those with a tag in the top 16
+ * bits: nil, false, true, and a reference, to a string, that's held in an
+ * {@code Object[]} next to wherever the value is, its index in the low 32
+ * bits if it's needed to find it.
+ */
+final class Value {
+    static final long NIL = 0xFFF9_0000_0000_0000L;
+    static final long FALSE = 0xFFFA_0000_0000_0000L;
+    static final long TRUE = 0xFFFB_0000_0000_0000L;
+    /** Never a value of a program, what isn't defined yet is. */
+    static final long UNDEFINED = 0xFFFC_0000_0000_0000L;
+
+    private static final long REFERENCE = 0xFFFD_0000_0000_0000L;
+    private static final long TAG = 0xFFFF_0000_0000_0000L;
+    private static final int FIRST_TAG = 0xFFF9;
+
+    private Value() {}
+
+    static long number(double value) {
+        return Double.doubleToLongBits(value);
+    }
+
+    static long bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    static long reference(int index) {
+        return REFERENCE | index;
+    }
+
+    /**
+     * The value of {@code o} as the other backends represent it, a
+     * reference, if it is one, to be kept next to it.
+     */
+    static long of(Object o) {
+        return switch (o) {
+            case null -> NIL;
+            case Double d -> number(d);
+            case Boolean b -> bool(b);
+            default -> REFERENCE;
+        };
+    }
+
+    static boolean isNumber(long value) {
+        return (int) (value >>> 48) < FIRST_TAG;
+    }
+
+    static boolean isReference(long value) {
+        return (value & TAG) == REFERENCE;
+    }
+
+    static boolean isTruthy(long value) {
+        return value != NIL && value != FALSE;
+    }
+
+    /**
+     * @throws ClassCastException if it isn't one, like unboxing a
+     *                            {@link Double} that isn't does
+     */
+    static double asNumber(long value) {
+        if (!isNumber(value)) {
+            throw new ClassCastException("Operands must be numbers.");
+        }
+
+        return Double.longBitsToDouble(value);
+    }
+
+    static int index(long reference) {
+        return (int) reference;
+    }
+
+    /**
+     * The value as the other backends represent it, {@code reference} if
+     * it's a reference.
+     */
+    static Object toObject(long value, Object reference) {
+        if (isNumber(value)) {
+            return Double.longBitsToDouble(value);
+        }
+
+        if (value == NIL) {
+            return null;
+        }
+
+        if (isReference(value)) {
+            return reference;
+        }
+
+        return value == TRUE;
+    }
+}
@@ -1,4 +1,15 @@
 package com.github.gdoenlen.lox;
 
-record Var(Token token, Expr initializer) implements Statement {
+record Var(Token token, Expr initializer, int slot) implements Statement {
+    Var(Token token, Expr initializer) {
+        this(token, initializer, Resolver.GLOBAL);
+    }
+
+    int symbol() {
+        return this.token.symbol();
+    }
+
+    boolean isGlobal() {
+        return this.slot == Resolver.GLOBAL;
+    }
 }
@@ -1,4 +1,15 @@
 package com.github.gdoenlen.lox;
 
-record Variable(Token token) implements Expr {
+record Variable(Token token, int depth, int slot) implements Expr {
+    Variable(Token token) {
+        this(token, Resolver.GLOBAL, Resolver.GLOBAL);
+    }
+
+    int symbol() {
+        return this.token.symbol();
+    }
+
+    boolean isGlobal() {
+        return this.depth == Resolver.GLOBAL;
+    }
 }
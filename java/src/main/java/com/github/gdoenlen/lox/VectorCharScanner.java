@@ -0,0 +1,151 @@
+package com.github.gdoenlen.lox;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.github.gdoenlen.lox.ScalarCharScanner.isAsciiAlphaNumeric;
+import static com.github.gdoenlen.lox.ScalarCharScanner.isBlank;
+
+/**
+ * Compares a whole vector of characters, 32 with AVX2 and 64 with AVX-512,
+ * per step. Most runs are short, so the first character is checked on its
+ * own before loading a vector, and the tail that doesn't fill one is
+ * scanned one character at a time.
+ *
+ * The source is scanned as Latin-1 bytes: anything outside of it becomes
+ * {@code '?'}, which ends every run scanned here, and is left for the
+ * {@link Lexer} to look at.
+ *
+ * Only loaded once {@link CharScanner.Vectors} has found the incubator module.
+ */
+final class VectorCharScanner implements CharScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+
+    private final byte[] source;
+
+    VectorCharScanner(byte[] source) {
+        this.source = source;
+    }
+
+    /**
+     * Without real vector registers the Vector API falls back to Java code
+     * that is a lot slower than the scalar loops.
+     */
+    static boolean isAccelerated() {
+        return LENGTH >= 8;
+    }
+
+    @Override
+    public int skipBlanks(int from) {
+        int i = from;
+        if (i < this.source.length && !isBlank(this.charAt(i))) {
+            return i;
+        }
+
+        for (; i <= this.source.length - LENGTH; i += LENGTH) {
+            var v = ByteVector.fromArray(SPECIES, this.source, i);
+            VectorMask<Byte> blank = v.eq((byte) ' ').or(v.eq((byte) '\t')).or(v.eq((byte) '\r'));
+            int first = blank.not().firstTrue();
+            if (first < LENGTH) {
+                return i + first;
+            }
+        }
+
+        while (i < this.source.length && isBlank(this.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    @Override
+    public int indexOf(char c, int from) {
+        int i = from;
+        for (; i <= this.source.length - LENGTH; i += LENGTH) {
+            int first = ByteVector.fromArray(SPECIES, this.source, i).eq((byte) c).firstTrue();
+            if (first < LENGTH) {
+                return i + first;
+            }
+        }
+
+        while (i < this.source.length && this.charAt(i) != c) {
+            i++;
+        }
+
+        return i;
+    }
+
+    @Override
+    public int count(char c, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (; i <= to - LENGTH; i += LENGTH) {
+            count += ByteVector.fromArray(SPECIES, this.source, i).eq((byte) c).trueCount();
+        }
+
+        for (; i < to; i++) {
+            if (this.charAt(i) == c) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int skipAlphaNumerics(int from) {
+        int i = from;
+        if (i < this.source.length && !isAsciiAlphaNumeric(this.charAt(i))) {
+            return i;
+        }
+
+        for (; i <= this.source.length - LENGTH; i += LENGTH) {
+            var v = ByteVector.fromArray(SPECIES, this.source, i);
+            var lower = v.or((byte) 0x20);
+            VectorMask<Byte> letter = lower.compare(VectorOperators.GE, (byte) 'a')
+                .and(lower.compare(VectorOperators.LE, (byte) 'z'));
+            int first = letter.or(digits(v)).not().firstTrue();
+            if (first < LENGTH) {
+                return i + first;
+            }
+        }
+
+        while (i < this.source.length && isAsciiAlphaNumeric(this.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    @Override
+    public int skipDigits(int from) {
+        int i = from;
+        if (i < this.source.length && !Lexer.isAsciiDigit(this.charAt(i))) {
+            return i;
+        }
+
+        for (; i <= this.source.length - LENGTH; i += LENGTH) {
+            int first = digits(ByteVector.fromArray(SPECIES, this.source, i)).not().firstTrue();
+            if (first < LENGTH) {
+                return i + first;
+            }
+        }
+
+        while (i < this.source.length && Lexer.isAsciiDigit(this.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private char charAt(int index) {
+        return (char) (this.source[index] & 0xFF);
+    }
+
+    private static VectorMask<Byte> digits(ByteVector v) {
+        return v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9'));
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.gdoenlen.lox;
+
+import static com.github.gdoenlen.lox.Operators.isTruthy;
+
+/**
+ * A stack based interpreter for {@link Chunk}s produced by the {@link BytecodeCompiler}.
+ *
+ * Globals live for as long as the machine does so the REPL can reuse one
+ * instance across lines, every {@link #run(Chunk)} gets fresh locals.
+ */
+class VirtualMachine {
+    private final Environment globals = new Environment();
+    private final OutputSink out;
+
+    VirtualMachine() {
+        this(OutputSink.stdout());
+    }
+
+    VirtualMachine(OutputSink out) {
+        this.out = out;
+    }
+
+    void run(Chunk chunk) {
+        final byte[] code = chunk.code();
+        final Object[] constants = chunk.constants();
+        final Object[] locals = new Object[chunk.locals()];
+        final Object[] stack = new Object[chunk.stack()];
+        int ip = 0;
+        int sp = 0;
+
+        for (;;) {
+            byte op = code[ip++];
+            switch (op) {
+                case OpCode.CONSTANT -> {
+                    stack[sp++] = constants[readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.NIL -> stack[sp++] = null;
+                case OpCode.TRUE -> stack[sp++] = Boolean.TRUE;
+                case OpCode.FALSE -> stack[sp++] = Boolean.FALSE;
+                case OpCode.POP -> stack[--sp] = null;
+                case OpCode.GET_LOCAL -> {
+                    stack[sp++] = locals[readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.SET_LOCAL -> {
+                    locals[readShort(code, ip)] = stack[sp - 1];
+                    ip += 2;
+                }
+                case OpCode.STORE_LOCAL -> {
+                    locals[readShort(code, ip)] = stack[--sp];
+                    stack[sp] = null;
+                    ip += 2;
+                }
+                case OpCode.GET_GLOBAL -> {
+                    stack[sp++] = this.globals.get((Token) constants[readShort(code, ip)]);
+                    ip += 2;
+                }
+                case OpCode.SET_GLOBAL -> {
+                    this.globals.assign((Token) constants[readShort(code, ip)], stack[sp - 1]);
+                    ip += 2;
+                }
+                case OpCode.DEFINE_GLOBAL -> {
+                    this.globals.define((Token) constants[readShort(code, ip)], stack[--sp]);
+                    stack[sp] = null;
+                    ip += 2;
+                }
+                case OpCode.EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Operators.isEqual(stack[sp - 1], right);
+                }
+                case OpCode.NOT_EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Operators.isEqual(stack[sp - 1], right);
+                }
+                case OpCode.GREATER -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] > (Double) right;
+                }
+                case OpCode.GREATER_EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] >= (Double) right;
+                }
+                case OpCode.LESS -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] < (Double) right;
+                }
+                case OpCode.LESS_EQUAL -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] <= (Double) right;
+                }
+                case OpCode.ADD -> {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    if (left instanceof Double l && right instanceof Double r) {
+                        stack[sp - 1] = l + r;
+                    } else {
+                        stack[sp - 1] = Operators.plus(left, right);
+                    }
+                }
+                case OpCode.SUBTRACT -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] - (Double) right;
+                }
+                case OpCode.MULTIPLY -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] * (Double) right;
+                }
+                case OpCode.DIVIDE -> {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (Double) stack[sp - 1] / (Double) right;
+                }
+                case OpCode.NOT -> stack[sp - 1] = !isTruthy(stack[sp - 1]);
+                case OpCode.NEGATE -> stack[sp - 1] = -(Double) stack[sp - 1];
+                case OpCode.PRINT -> {
+                    this.out.print(stack[--sp]);
+                    stack[sp] = null;
+                }
+                case OpCode.JUMP -> ip = readInt(code, ip);
+                case OpCode.JUMP_IF_FALSE -> {
+                    Object condition = stack[--sp];
+                    stack[sp] = null;
+                    ip = isTruthy(condition) ? ip + 4 : readInt(code, ip);
+                }
+                case OpCode.JUMP_IF_FALSE_OR_POP -> {
+                    if (isTruthy(stack[sp - 1])) {
+                        stack[--sp] = null;
+                        ip += 4;
+                    } else {
+                        ip = readInt(code, ip);
+                    }
+                }
+                case OpCode.JUMP_IF_TRUE_OR_POP -> {
+                    if (isTruthy(stack[sp - 1])) {
+                        ip = readInt(code, ip);
+                    } else {
+                        stack[--sp] = null;
+                        ip += 4;
+                    }
+                }
+                case OpCode.RETURN -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + op + " at line " + chunk.lines()[ip - 1]);
+            }
+        }
+    }
+
+    private static int readShort(byte[] code, int ip) {
+        return ((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] code, int ip) {
+        return ((code[ip] & 0xFF) << 24)
+            | ((code[ip + 1] & 0xFF) << 16)
+            | ((code[ip + 2] & 0xFF) << 8)
+            | (code[ip + 3] & 0xFF);
+    }
+}
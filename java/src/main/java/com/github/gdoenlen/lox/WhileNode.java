@@ -0,0 +1,25 @@
+package com.github.gdoenlen.lox;
+
+final class WhileNode extends StatementNode {
+    private ExprNode condition;
+    private final StatementNode body;
+
+    WhileNode(ExprNode condition, StatementNode body) {
+        this.condition = this.adopt(condition);
+        this.body = this.adopt(body);
+    }
+
+    @Override
+    void execute(NodeFrame frame) {
+        while (this.condition.executeTruthy(frame)) {
+            this.body.execute(frame);
+        }
+    }
+
+    @Override
+    void replaceChild(Node oldChild, Node newChild) {
+        if (this.condition == oldChild) {
+            this.condition = (ExprNode) newChild;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.gdoenlen.lox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The resolver as the REPL uses it, one line after another with the same
+ * {@link Resolver}.
+ */
+class ResolverTest {
+    private final List<String> errors = new ArrayList<>();
+    private final Symbols symbols = new Symbols();
+    private final Resolver resolver = new Resolver((line, message) -> this.errors.add(message));
+
+    @Test
+    void globalDeclaredOnAnEarlierLineResolves() {
+        this.resolve("var a = 1;");
+        this.resolve("print a;");
+
+        assertEquals(List.of(), this.errors);
+    }
+
+    @Test
+    void globalWhoseInitializerFailedIsNotDefined() {
+        this.resolve("var a = b;");
+        assertEquals(List.of("Undefined variable 'b'."), this.errors);
+
+        this.errors.clear();
+        this.resolve("print a;");
+        assertEquals(List.of("Undefined variable 'a'."), this.errors);
+    }
+
+    @Test
+    void failedRedeclarationKeepsTheGlobal() {
+        this.resolve("var a = 1;");
+        this.resolve("var a = b;");
+
+        this.errors.clear();
+        this.resolve("print a;");
+        assertEquals(List.of(), this.errors);
+    }
+
+    @Test
+    void globalOnALineThatFailedIsNotDefined() {
+        this.resolve("var a = 1; print b;");
+        assertEquals(List.of("Undefined variable 'b'."), this.errors);
+
+        this.errors.clear();
+        this.resolve("print a;");
+        assertEquals(List.of("Undefined variable 'a'."), this.errors);
+    }
+
+    @Test
+    void globalIsKnownLaterOnTheLineThatDeclaresIt() {
+        this.resolve("var a = 1; print a;");
+
+        assertEquals(List.of(), this.errors);
+    }
+
+    private void resolve(String line) {
+        Collection<Statement> statements = new Parser(new Lexer(line, this.symbols).scanColumnar()).parse();
+        this.resolver.resolve(statements);
+    }
+}